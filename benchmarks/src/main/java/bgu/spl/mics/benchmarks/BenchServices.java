@@ -0,0 +1,85 @@
+package bgu.spl.mics.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.ThreadMode;
+
+/**
+ * Micro-services shared by the benchmarks, and starting and stopping them.
+ */
+final class BenchServices {
+
+    /**
+     * Terminates every {@link BenchService}.
+     */
+    static final class Stop implements Broadcast {
+    }
+
+    /**
+     * A service that counts {@code ready} down once subscribed, and terminates on {@link Stop}.
+     */
+    abstract static class BenchService extends MicroService {
+        private final CountDownLatch ready;
+
+        BenchService(String name, int batchSize, CountDownLatch ready) {
+            super(name, batchSize);
+            this.ready = ready;
+        }
+
+        @Override
+        protected final void initialize() {
+            subscribe();
+            subscribeBroadcast(Stop.class, stop -> terminate());
+            ready.countDown();
+        }
+
+        /**
+         * Subscribes to the messages the benchmark sends.
+         */
+        abstract void subscribe();
+    }
+
+    private BenchServices() {
+    }
+
+    /**
+     * Starts every service on a thread of its own and waits until all of them have subscribed.
+     * @return the threads, for {@link #stop(List)}.
+     */
+    static List<Thread> start(List<? extends MicroService> services, ThreadMode mode, CountDownLatch ready) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (MicroService service : services) {
+            Thread thread = mode.newThread(service, service.getName());
+            thread.start();
+            threads.add(thread);
+        }
+        ready.await();
+        return threads;
+    }
+
+    /**
+     * Stops every running {@link BenchService} and waits for {@code threads} to end.
+     */
+    static void stop(List<Thread> threads) throws InterruptedException {
+        MessageBusImpl.getInstance().sendBroadcast(new Stop());
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Waits, spinning, until {@code counter} reaches {@code target}; used to keep senders from
+     * outrunning the receivers by more than one batch.
+     */
+    static void awaitCount(AtomicLong counter, long target) {
+        while (counter.get() < target) {
+            Thread.onSpinWait();
+        }
+    }
+}
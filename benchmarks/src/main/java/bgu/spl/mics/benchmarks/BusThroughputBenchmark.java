@@ -0,0 +1,152 @@
+package bgu.spl.mics.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.Event;
+import bgu.spl.mics.Future;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.application.ThreadMode;
+
+/**
+ * Send/await throughput of {@link MessageBusImpl}: one sender to one handler,
+ * one sender broadcasting to many receivers, and many senders to one handler.
+ * <p>
+ * The bus is a singleton that reads its mailbox strategy once, so every
+ * parameter combination runs in its own fork and sets the system properties
+ * before the first {@code getInstance()}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class BusThroughputBenchmark {
+
+    private static final int WINDOW = 64; // Messages in flight per sender
+
+    public static final class Ping implements Event<Integer> {
+    }
+
+    public static final class Tock implements Broadcast {
+    }
+
+    @Param({"BLOCKING", "LOCK_FREE", "BOUNDED"})
+    public String mailbox;
+
+    @Param({"1", "64"})
+    public int batchSize;
+
+    @Param({"4"})
+    public int receivers;
+
+    private final AtomicLong broadcastsReceived = new AtomicLong();
+    private final Tock tock = new Tock();
+    private MessageBusImpl bus;
+    private List<Thread> threads;
+
+    @Setup(Level.Trial)
+    public void start() throws InterruptedException {
+        System.setProperty("bgu.spl.mics.mailbox", mailbox);
+        bus = MessageBusImpl.getInstance();
+        CountDownLatch ready = new CountDownLatch(1 + receivers);
+        List<BenchServices.BenchService> services = new ArrayList<>();
+        services.add(new BenchServices.BenchService("handler", batchSize, ready) {
+            @Override
+            void subscribe() {
+                subscribeEvent(Ping.class, ping -> complete(ping, 1));
+            }
+        });
+        for (int i = 0; i < receivers; i++) {
+            services.add(new BenchServices.BenchService("receiver" + i, batchSize, ready) {
+                @Override
+                void subscribe() {
+                    subscribeBroadcast(Tock.class, t -> broadcastsReceived.incrementAndGet());
+                }
+            });
+        }
+        threads = BenchServices.start(services, ThreadMode.PLATFORM, ready);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws InterruptedException {
+        BenchServices.stop(threads);
+    }
+
+    /**
+     * One event at a time: the round trip from sendEvent to the resolved Future.
+     */
+    @Benchmark
+    public Integer oneToOneRoundTrip() {
+        return bus.sendEvent(new Ping()).get();
+    }
+
+    /**
+     * {@value #WINDOW} events in flight, then waiting for all of them.
+     */
+    @Benchmark
+    @OperationsPerInvocation(WINDOW)
+    public int oneToOnePipelined(Window window) {
+        return window.sendAndAwait(bus);
+    }
+
+    /**
+     * {@value #WINDOW} broadcasts, each to every receiver, then waiting until all were handled.
+     */
+    @Benchmark
+    @OperationsPerInvocation(WINDOW)
+    public void oneToManyBroadcast() {
+        long target = broadcastsReceived.get() + (long) WINDOW * receivers;
+        for (int i = 0; i < WINDOW; i++) {
+            bus.sendBroadcast(tock);
+        }
+        BenchServices.awaitCount(broadcastsReceived, target);
+    }
+
+    /**
+     * Four senders, each with {@value #WINDOW} events in flight, to the one handler.
+     */
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(WINDOW)
+    public int manyToOneFanIn(Window window) {
+        return window.sendAndAwait(bus);
+    }
+
+    @State(Scope.Thread)
+    public static class Window {
+        private final Future<?>[] futures = new Future<?>[WINDOW]; // Generic arrays cannot be created
+
+        int sendAndAwait(MessageBusImpl bus) {
+            for (int i = 0; i < WINDOW; i++) {
+                futures[i] = bus.sendEvent(new Ping());
+            }
+            int sum = 0;
+            for (Future<?> future : futures) {
+                sum += (Integer) future.get();
+            }
+            return sum;
+        }
+    }
+}
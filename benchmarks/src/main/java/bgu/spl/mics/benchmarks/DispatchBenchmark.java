@@ -0,0 +1,101 @@
+package bgu.spl.mics.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.application.ThreadMode;
+
+/**
+ * The per-message cost of looking up subscribers and callbacks, as the number
+ * of message types a service subscribes to grows: one receiver subscribed to
+ * {@code types} broadcast types is sent broadcasts of each type in turn.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+
+    private static final int BATCH = 256;
+
+    public static final class T0 implements Broadcast { }
+    public static final class T1 implements Broadcast { }
+    public static final class T2 implements Broadcast { }
+    public static final class T3 implements Broadcast { }
+    public static final class T4 implements Broadcast { }
+    public static final class T5 implements Broadcast { }
+    public static final class T6 implements Broadcast { }
+    public static final class T7 implements Broadcast { }
+    public static final class T8 implements Broadcast { }
+    public static final class T9 implements Broadcast { }
+    public static final class T10 implements Broadcast { }
+    public static final class T11 implements Broadcast { }
+    public static final class T12 implements Broadcast { }
+    public static final class T13 implements Broadcast { }
+    public static final class T14 implements Broadcast { }
+    public static final class T15 implements Broadcast { }
+
+    private static final Broadcast[] ALL = {
+        new T0(), new T1(), new T2(), new T3(), new T4(), new T5(), new T6(), new T7(),
+        new T8(), new T9(), new T10(), new T11(), new T12(), new T13(), new T14(), new T15()
+    };
+
+    @Param({"1", "4", "16"})
+    public int types;
+
+    private final AtomicLong received = new AtomicLong();
+    private MessageBusImpl bus;
+    private List<Thread> threads;
+
+    @Setup(Level.Trial)
+    public void start() throws InterruptedException {
+        bus = MessageBusImpl.getInstance();
+        CountDownLatch ready = new CountDownLatch(1);
+        BenchServices.BenchService receiver = new BenchServices.BenchService("receiver", BATCH, ready) {
+            @Override
+            @SuppressWarnings("unchecked")
+            void subscribe() {
+                for (int i = 0; i < types; i++) {
+                    subscribeBroadcast((Class<Broadcast>) ALL[i].getClass(), b -> received.incrementAndGet());
+                }
+            }
+        };
+        threads = BenchServices.start(List.of(receiver), ThreadMode.PLATFORM, ready);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws InterruptedException {
+        BenchServices.stop(threads);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void sendAndDispatch() {
+        long target = received.get() + BATCH;
+        for (int i = 0; i < BATCH; i++) {
+            bus.sendBroadcast(ALL[i % types]);
+        }
+        BenchServices.awaitCount(received, target);
+    }
+}
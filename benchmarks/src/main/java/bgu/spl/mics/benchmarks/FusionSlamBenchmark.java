@@ -0,0 +1,100 @@
+package bgu.spl.mics.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bgu.spl.mics.application.objects.FusionSlam;
+import bgu.spl.mics.application.objects.LandMark;
+import bgu.spl.mics.application.objects.PackedPoints;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.objects.TrackedObject;
+
+/**
+ * A {@link FusionSlam} map of {@code landmarks} landmarks, about one per 10 square meters:
+ * {@link #process()} merges a new measurement of a random landmark into the map, as for every
+ * tracked object, and {@link #scan()} is the linear search for its id the map did before it was
+ * indexed, for comparison. {@link #within()} and {@link #nearest()} are position queries around
+ * random points of the map.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FusionSlamBenchmark {
+
+    private static final int KEYS = 1 << 12; // Looked up in turn; a power of two
+
+    @Param({"1000", "10000", "50000"})
+    public int landmarks;
+
+    private FusionSlam fusionSlam;
+    private final Pose pose = new Pose(0, 0, 0, 1);
+    private final TrackedObject[] objects = new TrackedObject[KEYS];
+    private final double[] xs = new double[KEYS];
+    private final double[] ys = new double[KEYS];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void map() {
+        Random random = new Random(42);
+        double side = Math.sqrt(landmarks * 10.0);
+        fusionSlam = new FusionSlam();
+        TrackedObject[] all = new TrackedObject[landmarks];
+        for (int i = 0; i < landmarks; i++) {
+            double x = random.nextDouble() * side;
+            double y = random.nextDouble() * side;
+            all[i] = new TrackedObject("Object_" + i, 1, "landmark",
+                    new PackedPoints(new double[] {x, y, x + 0.2, y + 0.1, x + 0.4, y - 0.1}));
+            fusionSlam.process(all[i], pose);
+        }
+        for (int k = 0; k < KEYS; k++) {
+            objects[k] = all[random.nextInt(landmarks)];
+            xs[k] = random.nextDouble() * side;
+            ys[k] = random.nextDouble() * side;
+        }
+    }
+
+    @Benchmark
+    public boolean process() {
+        return fusionSlam.process(objects[next++ & (KEYS - 1)], pose);
+    }
+
+    @Benchmark
+    public LandMark scan() {
+        String id = objects[next++ & (KEYS - 1)].getId();
+        for (LandMark landmark : fusionSlam.getLandMarkList()) {
+            if (landmark.getId().equals(id)) {
+                return landmark;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public List<LandMark> within() {
+        int k = next++ & (KEYS - 1);
+        return fusionSlam.getLandmarksWithin(xs[k], ys[k], 10);
+    }
+
+    @Benchmark
+    public List<LandMark> nearest() {
+        int k = next++ & (KEYS - 1);
+        return fusionSlam.getNearestLandmarks(xs[k], ys[k], 5);
+    }
+}
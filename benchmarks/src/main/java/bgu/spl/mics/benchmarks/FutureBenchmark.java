@@ -0,0 +1,90 @@
+package bgu.spl.mics.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import bgu.spl.mics.Future;
+
+/**
+ * The cost of resolving a {@link Future} and reading its result: alone, with a
+ * completion callback, and with several threads waiting on the Future one
+ * thread resolves. The cross-thread round trip through the bus is measured by
+ * {@link BusThroughputBenchmark#oneToOneRoundTrip()}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FutureBenchmark {
+
+    @Benchmark
+    public Integer resolveThenGet() {
+        Future<Integer> future = new Future<>();
+        future.resolve(1);
+        return future.get();
+    }
+
+    @Benchmark
+    public void resolveWithCallback(Blackhole blackhole) {
+        Future<Integer> future = new Future<>();
+        future.onComplete(blackhole::consume);
+        future.resolve(1);
+    }
+
+    @Benchmark
+    public Integer getResolved(Resolved state) {
+        return state.future.get();
+    }
+
+    @State(Scope.Benchmark)
+    public static class Resolved {
+        final Future<Integer> future = new Future<>();
+        {
+            future.resolve(1);
+        }
+    }
+
+    /**
+     * The Futures one thread keeps resolving while three others wait on the latest one.
+     */
+    @State(Scope.Group)
+    public static class Contended {
+        final AtomicReference<Future<Integer>> latest = new AtomicReference<>(resolved());
+
+        private static Future<Integer> resolved() {
+            Future<Integer> future = new Future<>();
+            future.resolve(0);
+            return future;
+        }
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void resolver(Contended state) {
+        Future<Integer> future = new Future<>();
+        state.latest.set(future);
+        future.resolve(1);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public Integer getter(Contended state) {
+        return state.latest.get().get(); // Waits if the resolver has published but not yet resolved it
+    }
+}
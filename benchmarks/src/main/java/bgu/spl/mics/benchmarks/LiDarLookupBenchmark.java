@@ -0,0 +1,110 @@
+package bgu.spl.mics.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bgu.spl.mics.application.LiDarDataConverter;
+import bgu.spl.mics.application.objects.LiDarDataBase;
+import bgu.spl.mics.application.objects.StampedCloudPoints;
+
+/**
+ * {@link LiDarDataBase#find(int, String)} as a LiDAR worker calls it for every
+ * detected object, on a generated {@code lidar_data.json} of {@code entries}
+ * measurements, {@code objects} per tick, looked up at random times and ids.
+ * {@link #scan()} is the linear search of the measurement list the database
+ * did before it was indexed, for comparison. With {@code format=binary} the file is
+ * converted and memory-mapped, and every lookup returns a view of the mapped file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g") // A million parsed measurements do not fit the default heap everywhere
+@State(Scope.Benchmark)
+public class LiDarLookupBenchmark {
+
+    private static final int KEYS = 1 << 12; // Looked up in turn; a power of two
+
+    @Param({"1000000"})
+    public int entries;
+
+    @Param({"10"})
+    public int objects;
+
+    @Param({"json", "binary"})
+    public String format;
+
+    private LiDarDataBase database;
+    private final int[] times = new int[KEYS];
+    private final String[] ids = new String[KEYS];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        File file = File.createTempFile("lidar_data", ".json");
+        file.deleteOnExit();
+        int ticks = entries / objects;
+        // Written record by record: the file is far larger than what the benchmark needs to keep around
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write('[');
+            for (int t = 1; t <= ticks; t++) {
+                for (int o = 0; o < objects; o++) {
+                    if (t > 1 || o > 0) {
+                        writer.write(',');
+                    }
+                    writer.write("{\"id\":\"Object_" + o + "\",\"time\":" + t + ",\"cloudPoints\":[["
+                            + (o + t * 0.001) + "," + (o * 0.5) + ",0.104],[" + (o + 0.25) + "," + (t * 0.002) + ",0.104]]}");
+                }
+            }
+            writer.write(']');
+        }
+        if (format.equals("binary")) {
+            File binary = File.createTempFile("lidar_data", ".bin");
+            binary.deleteOnExit();
+            LiDarDataConverter.convert(file, binary);
+            file = binary;
+        }
+        database = LiDarDataBase.fromFile(file.getPath());
+
+        Random random = new Random(42);
+        for (int k = 0; k < KEYS; k++) {
+            times[k] = 1 + random.nextInt(ticks);
+            ids[k] = "Object_" + random.nextInt(objects);
+        }
+    }
+
+    @Benchmark
+    public StampedCloudPoints find() {
+        int k = next++ & (KEYS - 1);
+        return database.find(times[k], ids[k]);
+    }
+
+    @Benchmark
+    public StampedCloudPoints scan() {
+        int k = next++ & (KEYS - 1);
+        for (StampedCloudPoints points : database.getCloudPoints()) {
+            if (points.getTime() == times[k] && points.getId().equals(ids[k])) {
+                return points;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,184 @@
+package bgu.spl.mics.benchmarks;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import bgu.spl.mics.ActorScheduler;
+import bgu.spl.mics.application.Simulation;
+import bgu.spl.mics.application.ThreadMode;
+import bgu.spl.mics.application.objects.FusionSlam;
+
+/**
+ * End-to-end time through the {@code application.services} pipeline: a
+ * generated run of {@code ticks} ticks (TickTime 0) in which every camera
+ * detects {@code objects} objects per tick, tracked by the LiDAR workers and
+ * turned into landmarks by Fusion-SLAM, alone or with the map split into
+ * {@code shards} FusionShardServices. Reported per run, from the first tick
+ * until Fusion-SLAM has written its output; parsing the input is not timed.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+
+    @Param({"platform", "virtual", "pool"})
+    public String mode;
+
+    @Param({"200"})
+    public int ticks;
+
+    @Param({"2"})
+    public int cameras;
+
+    @Param({"2"})
+    public int lidars;
+
+    @Param({"8"})
+    public int objects;
+
+    @Param({"1", "4"})
+    public int shards;
+
+    private File config;
+    private Simulation simulation;
+
+    @Setup(Level.Trial)
+    public void writeInput() throws IOException {
+        File dir = Files.createTempDirectory("pipeline").toFile();
+        dir.deleteOnExit();
+
+        JsonObject cameraData = new JsonObject();
+        JsonArray cameraConfigurations = new JsonArray();
+        for (int c = 1; c <= cameras; c++) {
+            JsonArray stamped = new JsonArray();
+            for (int t = 1; t <= ticks; t++) {
+                JsonArray detected = new JsonArray();
+                for (int o = 0; o < objects; o++) {
+                    JsonObject object = new JsonObject();
+                    object.addProperty("id", objectId(c, o));
+                    object.addProperty("description", "Object");
+                    detected.add(object);
+                }
+                JsonObject at = new JsonObject();
+                at.addProperty("time", t);
+                at.add("detectedObjects", detected);
+                stamped.add(at);
+            }
+            cameraData.add("camera" + c, stamped);
+            JsonObject camera = new JsonObject();
+            camera.addProperty("id", c);
+            camera.addProperty("frequency", 0);
+            camera.addProperty("camera_key", "camera" + c);
+            cameraConfigurations.add(camera);
+        }
+
+        JsonArray lidarData = new JsonArray();
+        JsonArray poses = new JsonArray();
+        for (int t = 1; t <= ticks; t++) {
+            for (int c = 1; c <= cameras; c++) {
+                for (int o = 0; o < objects; o++) {
+                    JsonObject points = new JsonObject();
+                    points.addProperty("time", t);
+                    points.addProperty("id", objectId(c, o));
+                    JsonArray cloud = new JsonArray();
+                    for (int p = 0; p < 4; p++) {
+                        JsonArray point = new JsonArray();
+                        point.add(o + p * 0.25 + t * 0.001);
+                        point.add(c - p * 0.25);
+                        point.add(0.104);
+                        cloud.add(point);
+                    }
+                    points.add("cloudPoints", cloud);
+                    lidarData.add(points);
+                }
+            }
+            JsonObject pose = new JsonObject();
+            pose.addProperty("time", t);
+            pose.addProperty("x", t * 0.1);
+            pose.addProperty("y", t * 0.05);
+            pose.addProperty("yaw", (t * 3) % 360);
+            poses.add(pose);
+        }
+
+        JsonArray lidarConfigurations = new JsonArray();
+        for (int l = 1; l <= lidars; l++) {
+            JsonObject lidar = new JsonObject();
+            lidar.addProperty("id", l);
+            lidar.addProperty("frequency", 0);
+            lidarConfigurations.add(lidar);
+        }
+        JsonObject cameraSection = new JsonObject();
+        cameraSection.add("CamerasConfigurations", cameraConfigurations);
+        cameraSection.addProperty("camera_datas_path", "camera_data.json");
+        JsonObject lidarSection = new JsonObject();
+        lidarSection.add("LidarConfigurations", lidarConfigurations);
+        lidarSection.addProperty("lidars_data_path", "lidar_data.json");
+        JsonObject configuration = new JsonObject();
+        configuration.add("Cameras", cameraSection);
+        configuration.add("Lidars", lidarSection);
+        configuration.addProperty("poseJsonFile", "pose_data.json");
+        configuration.addProperty("TickTime", 0);
+        configuration.addProperty("Duration", ticks + 10); // Sensors finish first
+        configuration.addProperty("FusionShards", shards);
+
+        write(new File(dir, "camera_data.json"), cameraData);
+        write(new File(dir, "lidar_data.json"), lidarData);
+        write(new File(dir, "pose_data.json"), poses);
+        config = new File(dir, "configuration_file.json");
+        write(config, configuration);
+    }
+
+    @Setup(Level.Invocation)
+    public void load() throws IOException {
+        // Fusion-SLAM is a singleton: start every run from an empty map
+        FusionSlam.getInstance().clear();
+        simulation = new Simulation(config.getPath());
+    }
+
+    @Benchmark
+    public int run() throws InterruptedException {
+        if (mode.equals("pool")) {
+            ActorScheduler scheduler = new ActorScheduler();
+            simulation.run(scheduler);
+            scheduler.shutdown();
+        } else {
+            simulation.run(ThreadMode.parse(mode));
+        }
+        return simulation.getStatistics().getNumLandmarks();
+    }
+
+    private static String objectId(int camera, int object) {
+        return "Object_" + camera + "_" + object;
+    }
+
+    private static void write(File file, JsonElement json) throws IOException {
+        file.deleteOnExit();
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(json.toString());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package bgu.spl.mics.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.Event;
+import bgu.spl.mics.Lane;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.ThreadMode;
+
+/**
+ * Time-to-quiesce after a crash under load: {@code workers} services each have
+ * about {@code backlog} slow events queued when a crash broadcast is sent, and
+ * the time is measured until every one of them has terminated. With the crash
+ * on {@link Lane#CONTROL} it overtakes the backlog; on {@link Lane#DATA} it waits behind it.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(2)
+@State(Scope.Benchmark)
+public class QuiesceBenchmark {
+
+    public static final class Work implements Event<Boolean> {
+    }
+
+    public static final class Crash implements Broadcast {
+    }
+
+    @Param({"CONTROL", "DATA"})
+    public String lane;
+
+    @Param({"10000"})
+    public int backlog;
+
+    @Param({"4"})
+    public int workers;
+
+    private MessageBusImpl bus;
+    private List<Thread> threads;
+
+    @Setup(Level.Trial)
+    public void assignLane() {
+        bus = MessageBusImpl.getInstance();
+        bus.setLane(Crash.class, Lane.valueOf(lane));
+    }
+
+    @Setup(Level.Invocation)
+    public void load() throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(workers);
+        List<MicroService> services = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            services.add(new BenchServices.BenchService("worker" + i, 1, ready) {
+                @Override
+                void subscribe() {
+                    subscribeEvent(Work.class, work -> {
+                        Blackhole.consumeCPU(1000); // A few microseconds per event
+                        complete(work, true);
+                    });
+                    subscribeBroadcast(Crash.class, crash -> terminate());
+                }
+            });
+        }
+        threads = BenchServices.start(services, ThreadMode.PLATFORM, ready);
+        for (int i = 0; i < backlog * workers; i++) {
+            bus.sendEvent(new Work()); // Round-robin over the workers
+        }
+    }
+
+    @Benchmark
+    public void crashToQuiesce() throws InterruptedException {
+        bus.sendBroadcast(new Crash());
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
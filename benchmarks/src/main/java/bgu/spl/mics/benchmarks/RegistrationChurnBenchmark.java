@@ -0,0 +1,101 @@
+package bgu.spl.mics.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.Event;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MicroService;
+
+/**
+ * The cost of a service joining and leaving the bus: register, subscribe to an
+ * event and a broadcast type, and unregister, next to {@code subscribers}
+ * long-lived subscribers of the same types.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class RegistrationChurnBenchmark {
+
+    public static final class Job implements Event<Integer> {
+    }
+
+    public static final class Notice implements Broadcast {
+    }
+
+    /**
+     * A service that is registered and subscribed directly on the bus, and never run.
+     */
+    static final class Idle extends MicroService {
+        Idle(String name) {
+            super(name);
+        }
+
+        @Override
+        protected void initialize() {
+        }
+    }
+
+    @Param({"0", "100", "1000"})
+    public int subscribers;
+
+    private final List<MicroService> resident = new ArrayList<>();
+    private MessageBusImpl bus;
+
+    @Setup(Level.Trial)
+    public void subscribeResidents() {
+        bus = MessageBusImpl.getInstance();
+        for (int i = 0; i < subscribers; i++) {
+            MicroService service = new Idle("resident" + i);
+            churnIn(service);
+            resident.add(service);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void unregisterResidents() {
+        for (MicroService service : resident) {
+            bus.unregister(service);
+        }
+        resident.clear();
+    }
+
+    @Benchmark
+    public void registerSubscribeUnregister() {
+        MicroService service = new Idle("churn");
+        churnIn(service);
+        bus.unregister(service);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void registerSubscribeUnregisterContended() {
+        registerSubscribeUnregister();
+    }
+
+    private void churnIn(MicroService service) {
+        bus.register(service);
+        bus.subscribeEvent(Job.class, service);
+        bus.subscribeBroadcast(Notice.class, service);
+    }
+}
@@ -0,0 +1,121 @@
+package bgu.spl.mics.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bgu.spl.mics.ActorScheduler;
+import bgu.spl.mics.ClockBroadcast;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.ThreadMode;
+
+/**
+ * Starting {@code services} micro-services and getting one clock tick to all of
+ * them, on platform threads, virtual threads or an {@link ActorScheduler}.
+ * Run with {@code -prof gc} to compare the memory each mode allocates.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ThreadModeBenchmark {
+
+    public static final class Tick implements ClockBroadcast {
+    }
+
+    @Param({"platform", "virtual", "pool"})
+    public String mode;
+
+    @Param({"100", "1000", "10000"})
+    public int services;
+
+    private MessageBusImpl bus;
+    private ActorScheduler scheduler;
+    private List<Thread> threads;
+    private CountDownLatch ticked;
+
+    @Setup(Level.Trial)
+    public void createBus() {
+        bus = MessageBusImpl.getInstance();
+    }
+
+    /**
+     * The time until every service has registered and subscribed.
+     */
+    @Benchmark
+    public void startup() throws InterruptedException {
+        start(new CountDownLatch(services));
+    }
+
+    /**
+     * The time from publishing a tick until every service has handled it.
+     */
+    @Benchmark
+    public void tickFanOut(Started started) throws InterruptedException {
+        bus.sendBroadcast(new Tick());
+        ticked.await();
+    }
+
+    /**
+     * Runs {@link #tickFanOut(Started)} with the services already started.
+     */
+    @State(Scope.Benchmark)
+    public static class Started {
+        @Setup(Level.Invocation)
+        public void start(ThreadModeBenchmark benchmark) throws InterruptedException {
+            benchmark.start(new CountDownLatch(benchmark.services));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void stop() throws InterruptedException {
+        if (scheduler != null) {
+            bus.sendBroadcast(new BenchServices.Stop());
+            scheduler.awaitTermination();
+            scheduler.shutdown();
+            scheduler = null;
+        } else {
+            BenchServices.stop(threads);
+        }
+    }
+
+    private void start(CountDownLatch ready) throws InterruptedException {
+        ticked = new CountDownLatch(services);
+        List<MicroService> all = new ArrayList<>();
+        for (int i = 0; i < services; i++) {
+            all.add(new BenchServices.BenchService("service" + i, 1, ready) {
+                @Override
+                void subscribe() {
+                    subscribeBroadcast(Tick.class, tick -> ticked.countDown());
+                }
+            });
+        }
+        if (mode.equals("pool")) {
+            scheduler = new ActorScheduler();
+            for (MicroService service : all) {
+                scheduler.start(service);
+            }
+            ready.await();
+        } else {
+            threads = BenchServices.start(all, ThreadMode.parse(mode), ready);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package bgu.spl.mics.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import bgu.spl.mics.application.objects.CloudPoint;
+import bgu.spl.mics.application.objects.PackedPoints;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.objects.PoseTransform;
+
+/**
+ * Transforming the points of a TrackedObjectsEvent of {@code objects} objects, {@code points}
+ * points each, to the charging station's coordinate system: {@link #batch()} as
+ * {@link bgu.spl.mics.application.objects.FusionSlam#processAll} does, all the points at once in
+ * a reused buffer, and {@link #perPoint()} as it was done before, a new CloudPoint per point and
+ * the sine and cosine computed again for every object.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransformBenchmark {
+
+    @Param({"10", "100"})
+    public int objects;
+
+    @Param({"4", "32"})
+    public int points;
+
+    private final Pose pose = new Pose(1.5f, -2.25f, 37.5f, 1);
+    private PackedPoints[] local;
+    private double[] buffer;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        Random random = new Random(42);
+        local = new PackedPoints[objects];
+        for (int o = 0; o < objects; o++) {
+            double[] xy = new double[2 * points];
+            for (int i = 0; i < xy.length; i++) {
+                xy[i] = random.nextDouble() * 20 - 10;
+            }
+            local[o] = new PackedPoints(xy);
+        }
+        buffer = new double[2 * objects * points];
+    }
+
+    @Benchmark
+    public double[] batch() {
+        int offset = 0;
+        for (PackedPoints object : local) {
+            object.copyTo(buffer, offset);
+            offset += 2 * object.size();
+        }
+        new PoseTransform(pose).apply(buffer, 0, offset / 2);
+        return buffer;
+    }
+
+    @Benchmark
+    public void perPoint(Blackhole blackhole) {
+        for (PackedPoints object : local) {
+            double yaw = Math.toRadians(pose.getYaw());
+            double cos = Math.cos(yaw);
+            double sin = Math.sin(yaw);
+            CloudPoint[] global = new CloudPoint[object.size()];
+            for (int i = 0; i < global.length; i++) {
+                CloudPoint point = object.get(i);
+                global[i] = new CloudPoint(cos * point.getX() - sin * point.getY() + pose.getX(),
+                        sin * point.getX() + cos * point.getY() + pose.getY());
+            }
+            blackhole.consume(global);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package bgu.spl.mics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link MicroService}s as actors multiplexed over a fixed-size
+ * {@link ForkJoinPool} instead of giving each its own thread.
+ * <p>
+ * A service started on the scheduler is registered and initialized on a pool
+ * thread, and is then scheduled again only when a message is added to its
+ * queue in the {@link MessageBusImpl}. Each time it runs it calls at most
+ * {@code batchSize} callbacks, clock broadcasts included, and then yields the
+ * thread, so a busy service cannot starve the others. A service never runs on two threads at once, so
+ * callbacks keep the same single-threaded view of the service's state as with
+ * {@link MicroService#run()}.
+ * <p>
+ * Callbacks should not block: a callback waiting on a {@link Future} or
+ * sleeping holds a pool thread for the whole wait, and if every pool thread
+ * waits on a service that cannot be scheduled the system deadlocks.
+ */
+public class ActorScheduler {
+
+    private static final int IDLE = 0;      // Nothing queued, waiting for messageArrived()
+    private static final int SCHEDULED = 1; // Submitted to the pool or running
+    private static final int STOPPED = 2;   // Terminated and unregistered
+
+    private final ForkJoinPool pool;
+    private final int batchSize;
+    private int running = 0; // Guarded by this
+
+    /**
+     * Creates a scheduler with one pool thread per available processor, calling up to 64 callbacks per turn.
+     */
+    public ActorScheduler() {
+        this(Runtime.getRuntime().availableProcessors(), 64);
+    }
+
+    /**
+     * @param parallelism the number of pool threads.
+     * @param batchSize   the maximal number of callbacks a service calls before yielding its thread.
+     */
+    public ActorScheduler(int parallelism, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1, got " + batchSize);
+        }
+        // Async mode gives FIFO scheduling of the submitted services, which is fairer than the default LIFO
+        this.pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Starts {@code service} on the pool: it is registered and initialized on a
+     * pool thread, and runs whenever messages are waiting for it until it terminates.
+     * <p>
+     * @param service the service to start. It must not also be run on a thread of its own.
+     */
+    public void start(MicroService service) {
+        synchronized (this) {
+            running++;
+        }
+        new Actor(service).schedule();
+    }
+
+    /**
+     * Waits until every service started on this scheduler has terminated.
+     * <p>
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized void awaitTermination() throws InterruptedException {
+        while (running > 0) {
+            wait();
+        }
+    }
+
+    /**
+     * Stops the pool threads. Services that have not terminated are not run again.
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private synchronized void terminated() {
+        running--;
+        if (running == 0) {
+            notifyAll();
+        }
+    }
+
+    private final class Actor implements Runnable {
+        private final MicroService service;
+        private final AtomicInteger state = new AtomicInteger(SCHEDULED);
+        private final List<Message> batch = new ArrayList<>(); // Messages taken from the queue and not handled yet
+        private boolean started = false; // Only read and written while the actor runs, which is never concurrent
+
+        private Actor(MicroService service) {
+            this.service = service;
+        }
+
+        private void schedule() {
+            pool.execute(this);
+        }
+
+        /**
+         * Called after a message was added to the service's queue.
+         */
+        private void signal() {
+            if (state.compareAndSet(IDLE, SCHEDULED)) {
+                schedule();
+            }
+        }
+
+        @Override
+        public void run() {
+            boolean done;
+            try {
+                if (!started) {
+                    started = true;
+                    done = service.startActor(this::signal);
+                } else {
+                    done = service.runActorBatch(batch, batchSize);
+                }
+            } catch (RuntimeException e) {
+                // A thread running the service would die here; stop the actor so awaitTermination() returns
+                System.err.println("MicroService " + service.getName() + " failed: " + e);
+                e.printStackTrace();
+                done = true;
+            }
+            if (done) {
+                state.set(STOPPED);
+                service.stopActor();
+                terminated();
+                return;
+            }
+            state.set(IDLE);
+            // A message that arrived while we were running saw SCHEDULED and did not resubmit us,
+            // and the batch may have left messages behind: check again now that we are IDLE.
+            if ((!batch.isEmpty() || service.hasMessages()) && state.compareAndSet(IDLE, SCHEDULED)) {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * The original mailbox: an unbounded {@link LinkedBlockingDeque}.
+ */
+final class BlockingMailbox extends QueueMailbox {
+
+    BlockingMailbox() {
+        super(new LinkedBlockingDeque<>());
+    }
+}
@@ -0,0 +1,26 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A mailbox backed by a fixed-size {@link ArrayBlockingQueue}.
+ * The array is allocated once, so sending a message does not allocate, and a
+ * sender waits for space instead of letting the mailbox grow without limit.
+ */
+final class BoundedMailbox extends QueueMailbox {
+
+    BoundedMailbox(int capacity) {
+        super(new ArrayBlockingQueue<>(capacity));
+    }
+
+    @Override
+    public boolean offer(Message m) {
+        try {
+            queue.put(m); // Waits until there is room in the mailbox
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Restore the interrupted status
+            return false;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package bgu.spl.mics;
+
+/**
+ * What the {@link MessageBusImpl} puts in the mailboxes for a sent
+ * {@link Broadcast} once {@link ClockBroadcast}s have been published on it:
+ * the broadcast together with the bus clock at the time it was sent, so that
+ * its receivers handle it after the clock broadcasts published before it and
+ * before those published after it (see {@link EventDelivery#clock}). A single
+ * delivery is shared by every receiver.
+ */
+final class BroadcastDelivery implements Message {
+
+    final Broadcast broadcast;
+    final long clock;
+
+    BroadcastDelivery(Broadcast broadcast, long clock) {
+        this.broadcast = broadcast;
+        this.clock = clock;
+    }
+}
@@ -0,0 +1,89 @@
+package bgu.spl.mics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The metrics the {@link MessageBusImpl} records when started with
+ * {@code -Dbgu.spl.mics.metrics=true}, per micro-service name and received
+ * message class (see {@link MessageStats}).
+ * <p>
+ * Counters are {@link java.util.concurrent.atomic.LongAdder}s and latencies go
+ * into lock-free log-linear histograms, so recording takes no lock. The time
+ * a message waits in the mailbox is measured for events, which carry their send
+ * time in their {@link EventDelivery}, and for clock broadcasts, whose channel
+ * keeps the publish time; other broadcasts are sent without an envelope, so
+ * only their callbacks are timed. When metrics are disabled nothing is recorded
+ * and no timestamp is taken.
+ */
+public final class BusMetrics implements BusMetricsMXBean {
+
+    static final String OBJECT_NAME = "bgu.spl.mics:type=MessageBus,name=metrics";
+
+    private final long startedAt = System.nanoTime();
+    private final Map<String, MessageMetrics> metrics = new ConcurrentHashMap<>(); // Keyed by service name and message class
+
+    BusMetrics() {
+    }
+
+    /**
+     * @param register whether to register the metrics with the platform MBean server; buses
+     *                 created per run are not, so that they can be garbage collected.
+     * @return new metrics if {@code -Dbgu.spl.mics.metrics=true}, null otherwise.
+     */
+    static BusMetrics fromSystemProperty(boolean register) {
+        if (!Boolean.getBoolean("bgu.spl.mics.metrics")) {
+            return null;
+        }
+        BusMetrics metrics = new BusMetrics();
+        if (!register) {
+            return metrics;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException e) {
+            System.err.println("Cannot register bus metrics with JMX: " + e.getMessage()); // Metrics still work without JMX
+        }
+        return metrics;
+    }
+
+    @Override
+    public long getUptimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+    }
+
+    @Override
+    public List<MessageStats> getMessageStats() {
+        long elapsed = System.nanoTime() - startedAt;
+        List<MessageStats> stats = new ArrayList<>();
+        for (MessageMetrics m : metrics.values()) {
+            stats.add(new MessageStats(m, elapsed));
+        }
+        stats.sort((a, b) -> a.getService().equals(b.getService())
+                ? a.getMessageType().compareTo(b.getMessageType())
+                : a.getService().compareTo(b.getService()));
+        return stats;
+    }
+
+    /**
+     * @return the metrics of messages of type {@code type} received by {@code m}, created on first use.
+     */
+    MessageMetrics of(MicroService m, Class<?> type) {
+        int typeId = MessageTypes.idOf(type);
+        MessageMetrics found = m.metrics().get(typeId); // Cached on the service, so recording does no hashing
+        return found != null ? found : m.metrics().computeIfAbsent(typeId,
+                () -> metrics.computeIfAbsent(m.getName() + '/' + type.getName(), k -> new MessageMetrics(m.getName(), type)));
+    }
+}
@@ -0,0 +1,21 @@
+package bgu.spl.mics;
+
+import java.util.List;
+
+/**
+ * The JMX view of {@link BusMetrics}, registered as
+ * {@value BusMetrics#OBJECT_NAME} for {@link MessageBusImpl#getInstance()} while
+ * metrics are enabled.
+ */
+public interface BusMetricsMXBean {
+
+    /**
+     * @return the time since metrics started, in milliseconds.
+     */
+    long getUptimeMillis();
+
+    /**
+     * @return a snapshot per micro-service and received message type.
+     */
+    List<MessageStats> getMessageStats();
+}
@@ -0,0 +1,18 @@
+package bgu.spl.mics;
+
+/**
+ * A "Marker" interface extending {@link Broadcast} for periodic timing
+ * broadcasts, such as clock ticks, that every subscriber must see in order.
+ * <p>
+ * Broadcasts of these types are not copied into each subscriber's message
+ * queue. The {@link MessageBusImpl} publishes each one once on a
+ * {@link ClockChannel} and wakes the subscribers, which read every broadcast
+ * published since they last looked. Queued messages carry the number of clock
+ * broadcasts published before they were sent, so each subscriber still handles
+ * the clock broadcasts and its messages in the order they were sent.
+ * Subscribing, the callbacks and {@link MessageBus#awaitMessage(MicroService)}
+ * work exactly as for any other {@link Broadcast}.
+ */
+public interface ClockBroadcast extends Broadcast {
+
+}
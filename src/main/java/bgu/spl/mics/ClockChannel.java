@@ -0,0 +1,155 @@
+package bgu.spl.mics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The shared channel a {@link ClockBroadcast} type is published on: a
+ * monotonic sequence number, a ring of the recent broadcasts, and a
+ * {@link Cursor} per subscriber, which tells the services to wake when a new
+ * one is published and how far each of them has read.
+ * <p>
+ * Publishing stores the broadcast once, whatever the number of subscribers,
+ * and each subscriber keeps its own position in the sequence. A broadcast is
+ * overwritten only once every subscriber has read it: when the slowest one
+ * falls {@link #INITIAL_HISTORY} or more broadcasts behind, the ring doubles
+ * instead, so no subscriber ever misses a broadcast.
+ */
+final class ClockChannel {
+
+    static final int INITIAL_HISTORY = 64; // A power of two
+
+    /**
+     * A subscriber of the channel and the sequence number of the last broadcast it read.
+     */
+    static final class Cursor {
+        final MicroService service;
+        private volatile long seen; // Written only by the service, after reading the broadcast
+
+        private Cursor(MicroService service, long seen) {
+            this.service = service;
+            this.seen = seen;
+        }
+
+        long seen() {return seen;}
+
+        /**
+         * Marks broadcast number {@code n} as read, so its slot may be reused; called by the service only.
+         */
+        void read(long n) {seen = n;}
+    }
+
+    private static final class Ring {
+        private final Broadcast[] broadcasts;
+        private final long[] publishedAt; // System.nanoTime() of each publish, for BusMetrics
+        private final long[] clocks;      // The bus clock of each publish, see EventDelivery#clock
+        private final int mask;
+
+        private Ring(int capacity) {
+            this.broadcasts = new Broadcast[capacity];
+            this.publishedAt = new long[capacity];
+            this.clocks = new long[capacity];
+            this.mask = capacity - 1;
+        }
+    }
+
+    private volatile Ring ring = new Ring(INITIAL_HISTORY);
+    private volatile long sequence = 0; // The sequence number of the latest broadcast, 0 before the first
+    private final List<Cursor> cursors = new CopyOnWriteArrayList<>();
+
+    /**
+     * Stores {@code b} as the next broadcast of the channel.
+     * @param clock the bus clock counting {@code b}, greater than that of any earlier broadcast.
+     */
+    synchronized void publish(Broadcast b, long clock) {
+        long next = sequence + 1;
+        Ring r = ring;
+        long oldest = next; // The oldest broadcast some subscriber has not read yet
+        for (Cursor cursor : cursors) {
+            oldest = Math.min(oldest, cursor.seen + 1);
+        }
+        if (next - oldest >= r.broadcasts.length) {
+            r = grow(r, oldest, next);
+            ring = r; // Volatile write publishes the copied broadcasts before the sequence below
+        }
+        r.broadcasts[(int) (next & r.mask)] = b;
+        r.publishedAt[(int) (next & r.mask)] = System.nanoTime();
+        r.clocks[(int) (next & r.mask)] = clock;
+        sequence = next; // Volatile write publishes the ring slot to readers
+    }
+
+    /**
+     * @return the sequence number of the latest broadcast, 0 if none was published.
+     */
+    long sequence() {
+        return sequence;
+    }
+
+    /**
+     * @param n a sequence number, at most {@code sequence()}, not yet read by the calling subscriber.
+     * @return the broadcast published as number {@code n}.
+     */
+    Broadcast get(long n) {
+        Ring r = ring;
+        return r.broadcasts[(int) (n & r.mask)];
+    }
+
+    /**
+     * @param n a sequence number, at most {@code sequence()}, not yet read by the calling subscriber.
+     * @return the {@link System#nanoTime()} broadcast number {@code n} was published at.
+     */
+    long publishedAt(long n) {
+        Ring r = ring;
+        return r.publishedAt[(int) (n & r.mask)];
+    }
+
+    /**
+     * @param n a sequence number, at most {@code sequence()}, not yet read by the calling subscriber.
+     * @return the bus clock broadcast number {@code n} was published with.
+     */
+    long clock(long n) {
+        Ring r = ring;
+        return r.clocks[(int) (n & r.mask)];
+    }
+
+    List<Cursor> cursors() {
+        return cursors;
+    }
+
+    /**
+     * Subscribes {@code m}, positioned after the latest broadcast, unless it already is a subscriber.
+     * @return the cursor of {@code m}.
+     */
+    synchronized Cursor subscribe(MicroService m) {
+        for (Cursor cursor : cursors) {
+            if (cursor.service == m) {
+                return cursor;
+            }
+        }
+        Cursor cursor = new Cursor(m, sequence);
+        cursors.add(cursor);
+        return cursor;
+    }
+
+    synchronized void unsubscribe(MicroService m) {
+        cursors.removeIf(cursor -> cursor.service == m);
+    }
+
+    /**
+     * @return a ring large enough for the broadcasts from {@code oldest} to {@code next}, holding those
+     *         of {@code r} from {@code oldest} on, in the slots of their sequence numbers.
+     */
+    private static Ring grow(Ring r, long oldest, long next) {
+        int capacity = r.broadcasts.length;
+        while (next - oldest >= capacity) {
+            capacity *= 2;
+        }
+        Ring grown = new Ring(capacity);
+        for (long n = oldest; n < next; n++) {
+            grown.broadcasts[(int) (n & grown.mask)] = r.broadcasts[(int) (n & r.mask)];
+            grown.publishedAt[(int) (n & grown.mask)] = r.publishedAt[(int) (n & r.mask)];
+            grown.clocks[(int) (n & grown.mask)] = r.clocks[(int) (n & r.mask)];
+        }
+        return grown;
+    }
+}
@@ -0,0 +1,48 @@
+package bgu.spl.mics;
+
+/**
+ * What the {@link MessageBusImpl} actually puts in a mailbox for a sent
+ * {@link Event}: the event together with the {@link Future} returned to its
+ * sender. Keeping the two together means the bus never has to look the
+ * Future up by the event's {@code equals}, so events that are equal to each
+ * other cannot be confused. Once its receiver takes it, the delivery is kept
+ * in the bus's {@link InFlightEvents} until the event is completed.
+ */
+final class EventDelivery implements Message {
+
+    final Event<?> event;
+    final Future<?> future;
+    final long sentAt; // System.nanoTime() of the send if bus metrics are enabled, 0 otherwise
+    final long clock;  // The number of ClockBroadcasts published on the bus before the send
+    MicroService receiver; // Set by the bus before the delivery is put in the receiver's mailbox
+
+    EventDelivery(Event<?> event, Future<?> future, long sentAt, long clock) {
+        this.event = event;
+        this.future = future;
+        this.sentAt = sentAt;
+        this.clock = clock;
+    }
+
+    /**
+     * @param queued a message as the bus queues it.
+     * @return the message that was sent: the event of an {@link EventDelivery},
+     *         the broadcast of a {@link BroadcastDelivery}, or {@code queued} itself.
+     */
+    static Message sent(Message queued) {
+        if (queued instanceof EventDelivery) {
+            return ((EventDelivery) queued).event;
+        }
+        return queued instanceof BroadcastDelivery ? ((BroadcastDelivery) queued).broadcast : queued;
+    }
+
+    /**
+     * @param queued a message as the bus queues it.
+     * @return the bus clock when it was sent, 0 if it does not carry one.
+     */
+    static long clockOf(Message queued) {
+        if (queued instanceof EventDelivery) {
+            return ((EventDelivery) queued).clock;
+        }
+        return queued instanceof BroadcastDelivery ? ((BroadcastDelivery) queued).clock : 0L;
+    }
+}
@@ -0,0 +1,143 @@
+package bgu.spl.mics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The subscribers of one {@link Event} type and the {@link RoutingPolicy} used
+ * to pick which of them receives the next event.
+ * <p>
+ * The subscribers and their mailboxes are kept in immutable arrays that are
+ * replaced on every subscribe/unregister, so picking a subscriber reads a
+ * consistent snapshot without locking or allocating. Every pick also records
+ * the depth of the chosen mailbox in a log2 histogram, which shows how well the
+ * policy balances the subscribers.
+ */
+final class EventRoute {
+
+    /**
+     * The number of histogram buckets: bucket 0 counts empty mailboxes and
+     * bucket {@code i > 0} counts depths in {@code [2^(i-1), 2^i)}; the last
+     * bucket also counts everything deeper.
+     */
+    static final int DEPTH_BUCKETS = 21;
+
+    private static final class Snapshot {
+        private final MicroService[] services;
+        private final Mailbox[] mailboxes;
+
+        private Snapshot(MicroService[] services, Mailbox[] mailboxes) {
+            this.services = services;
+            this.mailboxes = mailboxes;
+        }
+    }
+
+    private volatile Snapshot subscribers = new Snapshot(new MicroService[0], new Mailbox[0]);
+    private volatile RoutingPolicy policy = RoutingPolicy.ROUND_ROBIN;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final LongAdder[] depths = new LongAdder[DEPTH_BUCKETS];
+
+    EventRoute() {
+        for (int i = 0; i < depths.length; i++) {
+            depths[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Adds {@code m}, whose queue is {@code mailbox}, to the subscribers, unless it is already one of them.
+     */
+    synchronized void add(MicroService m, Mailbox mailbox) {
+        Snapshot current = subscribers;
+        for (MicroService s : current.services) {
+            if (s == m) {
+                return;
+            }
+        }
+        int n = current.services.length;
+        MicroService[] services = Arrays.copyOf(current.services, n + 1);
+        Mailbox[] mailboxes = Arrays.copyOf(current.mailboxes, n + 1);
+        services[n] = m;
+        mailboxes[n] = mailbox;
+        subscribers = new Snapshot(services, mailboxes);
+    }
+
+    /**
+     * Removes {@code m} from the subscribers, if it is one of them.
+     */
+    synchronized void remove(MicroService m) {
+        Snapshot current = subscribers;
+        int n = current.services.length;
+        for (int i = 0; i < n; i++) {
+            if (current.services[i] == m) {
+                MicroService[] services = new MicroService[n - 1];
+                Mailbox[] mailboxes = new Mailbox[n - 1];
+                System.arraycopy(current.services, 0, services, 0, i);
+                System.arraycopy(current.services, i + 1, services, i, n - i - 1);
+                System.arraycopy(current.mailboxes, 0, mailboxes, 0, i);
+                System.arraycopy(current.mailboxes, i + 1, mailboxes, i, n - i - 1);
+                subscribers = new Snapshot(services, mailboxes);
+                return;
+            }
+        }
+    }
+
+    void setPolicy(RoutingPolicy policy) {
+        this.policy = policy;
+    }
+
+    RoutingPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Picks the subscriber that receives {@code e} and delivers {@code message}, which carries {@code e},
+     * through {@code delivery}. If the chosen subscriber unregistered while the message was delivered,
+     * its mailbox will never be read again, so another subscriber is picked.
+     * @return false if there are no subscribers.
+     */
+    boolean route(Event<?> e, Message message, Delivery delivery) {
+        while (true) {
+            Snapshot current = subscribers;
+            if (current.services.length == 0) {
+                return false;
+            }
+            int chosen = policy.select(current.mailboxes, cursor, e);
+            Mailbox mailbox = current.mailboxes[chosen];
+            depths[bucketOf(mailbox.size())].increment();
+            if (delivery.deliver(current.services[chosen], mailbox, message)) {
+                return true;
+            }
+            // The service is already off this route (unregister removes it before dropping its mailbox),
+            // so the next snapshot does not contain it
+        }
+    }
+
+    /**
+     * @return the number of picks per depth bucket, see {@link #DEPTH_BUCKETS}.
+     */
+    long[] depthHistogram() {
+        long[] counts = new long[depths.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = depths[i].sum();
+        }
+        return counts;
+    }
+
+    private static int bucketOf(int depth) {
+        depth = Math.max(depth, 0); // A concurrent size() may be momentarily off; never let it reach the deepest bucket
+        int bucket = 32 - Integer.numberOfLeadingZeros(depth); // 0 -> 0, 1 -> 1, 2..3 -> 2, 4..7 -> 3, ...
+        return Math.min(bucket, DEPTH_BUCKETS - 1);
+    }
+
+    /**
+     * How the bus hands a routed event to the chosen subscriber's mailbox.
+     */
+    interface Delivery {
+        /**
+         * @return false if {@code mailbox} is no longer the mailbox of a registered {@code m}, so the
+         *         message will never be handled; true otherwise, even if the mailbox refused it.
+         */
+        boolean deliver(MicroService m, Mailbox mailbox, Message message);
+    }
+}
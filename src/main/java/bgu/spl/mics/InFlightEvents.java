@@ -0,0 +1,76 @@
+package bgu.spl.mics;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The events the services of a {@link MessageBusImpl} have taken from their
+ * queues but not completed yet, each with its {@link EventDelivery}. Events
+ * are matched by identity, so {@link MessageBus#complete} finds the Future
+ * of an event in constant time, from any thread, without calling the
+ * event's {@code equals} or {@code hashCode}.
+ * <p>
+ * An event is only in the table between the moment its receiver takes it
+ * and its completion; events waiting in a queue are not. The table is split
+ * into stripes, each an {@link IdentityHashMap} guarded by its own lock, so
+ * services handling events at the same time rarely contend. The events of a
+ * service that unregisters without completing them are dropped with it (see
+ * {@link #removeAll}), so they do not leak.
+ */
+final class InFlightEvents {
+
+    private static final int STRIPES = 16; // A power of two
+
+    private final Map<Event<?>, EventDelivery>[] stripes;
+
+    @SuppressWarnings({"unchecked", "rawtypes"}) // Generic array creation
+    InFlightEvents() {
+        stripes = new Map[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new IdentityHashMap<>();
+        }
+    }
+
+    private Map<Event<?>, EventDelivery> stripeOf(Event<?> event) {
+        return stripes[System.identityHashCode(event) & (STRIPES - 1)];
+    }
+
+    /**
+     * Records that the receiver of {@code delivery} took its event.
+     */
+    void add(EventDelivery delivery) {
+        Map<Event<?>, EventDelivery> stripe = stripeOf(delivery.event);
+        synchronized (stripe) {
+            stripe.put(delivery.event, delivery);
+        }
+    }
+
+    /**
+     * Forgets {@code event}.
+     * @return its delivery, or null if {@code event} is not in flight.
+     */
+    EventDelivery remove(Event<?> event) {
+        Map<Event<?>, EventDelivery> stripe = stripeOf(event);
+        synchronized (stripe) {
+            return stripe.remove(event);
+        }
+    }
+
+    /**
+     * Forgets every event received by {@code m}. Takes time proportional to the number
+     * of events in flight, so it is only called when {@code m} unregisters.
+     */
+    void removeAll(MicroService m) {
+        for (Map<Event<?>, EventDelivery> stripe : stripes) {
+            synchronized (stripe) {
+                Iterator<EventDelivery> deliveries = stripe.values().iterator();
+                while (deliveries.hasNext()) {
+                    if (deliveries.next().receiver == m) {
+                        deliveries.remove();
+                    }
+                }
+            }
+        }
+    }
+}
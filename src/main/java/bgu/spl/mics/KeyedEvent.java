@@ -0,0 +1,16 @@
+package bgu.spl.mics;
+
+/**
+ * An {@link Event} that carries a routing key. When its type is routed with
+ * {@link RoutingPolicy#STICKY}, all events with equal keys are delivered to
+ * the same subscriber (as long as the subscribers do not change).
+ *
+ * @param <T> The type of the result expected for the event.
+ */
+public interface KeyedEvent<T> extends Event<T> {
+
+    /**
+     * @return the key used to pick a subscriber, never null.
+     */
+    Object getRoutingKey();
+}
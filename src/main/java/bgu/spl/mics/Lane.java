@@ -0,0 +1,24 @@
+package bgu.spl.mics;
+
+/**
+ * The lanes of a service's mailbox, in the order they are served. A message is
+ * taken from a lane only when every lane before it is empty, so a message on an
+ * earlier lane overtakes everything queued on later ones. Message types are
+ * assigned lanes with {@link MessageBusImpl#setLane(Class, Lane)}.
+ */
+public enum Lane {
+
+    /** Messages that change what a service does, such as termination and crash notices. */
+    CONTROL,
+
+    /**
+     * Periodic messages that must not wait behind a data backlog but may wait behind
+     * control messages, such as heartbeats or rate updates. {@link ClockBroadcast}s
+     * are not queued at all (see {@link ClockChannel}), so they have no lane: ticks
+     * are already handled in the order they were published among the queued messages.
+     */
+    TIMING,
+
+    /** Everything else; the lane of every message type that was not assigned one. */
+    DATA
+}
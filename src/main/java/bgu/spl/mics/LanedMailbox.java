@@ -0,0 +1,101 @@
+package bgu.spl.mics;
+
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A mailbox that serves {@link Lane#CONTROL} and {@link Lane#TIMING} messages
+ * ahead of {@link Lane#DATA} ones.
+ * <p>
+ * Data messages go to the wrapped mailbox, with whatever strategy and limit it
+ * has. The priority lanes are unbounded queues, so overflow policies never hold
+ * back or drop a control message; adding to one wakes the consumer through the
+ * wrapped mailbox, whose {@code take()} then returns null and lets the priority
+ * lanes be checked.
+ */
+final class LanedMailbox implements Mailbox {
+
+    private final Mailbox data;
+    private final TypeTable<Lane> lanes; // Shared with the bus; types without an entry are DATA
+    private final Queue<Message> control = new ConcurrentLinkedQueue<>();
+    private final Queue<Message> timing = new ConcurrentLinkedQueue<>();
+
+    LanedMailbox(Mailbox data, TypeTable<Lane> lanes) {
+        this.data = data;
+        this.lanes = lanes;
+    }
+
+    @Override
+    public boolean offer(Message m) {
+        Lane lane = laneOf(EventDelivery.sent(m));
+        if (lane == null || lane == Lane.DATA) {
+            return data.offer(m);
+        }
+        (lane == Lane.CONTROL ? control : timing).offer(m);
+        data.wake();
+        return true;
+    }
+
+    @Override
+    public Message take() throws InterruptedException {
+        Message m = pollPriority();
+        if (m != null) {
+            return m;
+        }
+        m = data.take();
+        return m != null ? m : pollPriority(); // Null after a wakeup that was not for a priority message
+    }
+
+    @Override
+    public int drainTo(Collection<? super Message> sink, int max) throws InterruptedException {
+        int drained = pollPriority(sink, max);
+        if (drained > 0) {
+            return drained < max ? drained + data.poll(sink, max - drained) : drained;
+        }
+        // Not poll() first: it would consume a wakeup of the wrapped mailbox and then wait for the next one
+        drained = data.drainTo(sink, max);
+        return drained > 0 ? drained : pollPriority(sink, max);
+    }
+
+    @Override
+    public int poll(Collection<? super Message> sink, int max) {
+        int drained = pollPriority(sink, max);
+        return drained < max ? drained + data.poll(sink, max - drained) : drained;
+    }
+
+    @Override
+    public void wake() {
+        data.wake();
+    }
+
+    @Override
+    public int size() {
+        int priority = control.isEmpty() && timing.isEmpty() ? 0 : control.size() + timing.size(); // size() walks the queue
+        return priority + data.size();
+    }
+
+    @Override
+    public void close() {
+        data.close();
+    }
+
+    private Lane laneOf(Message m) {
+        return m instanceof LanedMessage ? ((LanedMessage) m).getLane() : lanes.get(MessageTypes.idOf(m.getClass()));
+    }
+
+    private Message pollPriority() {
+        Message m = control.poll();
+        return m != null ? m : timing.poll();
+    }
+
+    private int pollPriority(Collection<? super Message> sink, int max) {
+        int drained = 0;
+        Message m;
+        while (drained < max && (m = pollPriority()) != null) {
+            sink.add(m);
+            drained++;
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,15 @@
+package bgu.spl.mics;
+
+/**
+ * A {@link Message} that picks its own mailbox {@link Lane}, for types whose
+ * messages do not all have the same urgency. The lane it returns takes
+ * precedence over the one set for its type with
+ * {@link MessageBusImpl#setLane(Class, Lane)}.
+ */
+public interface LanedMessage extends Message {
+
+    /**
+     * @return the lane this message is queued on, never null.
+     */
+    Lane getLane();
+}
@@ -0,0 +1,365 @@
+package bgu.spl.mics;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A mailbox holding at most {@code capacity} messages in memory, which applies
+ * an {@link OverflowPolicy} to messages sent while it is full.
+ * <p>
+ * Under {@link OverflowPolicy#SPILL_TO_DISK} the overflow goes to a temporary
+ * file that is created on the first spill and deleted once it has been read
+ * back, or when the mailbox is closed. While the file holds anything, new
+ * messages are appended to it too, so the consumer still sees them in the
+ * order they were sent; one that cannot be written waits in memory in its turn.
+ * Spilled messages are read back as copies (see the policy).
+ */
+final class LimitedMailbox implements Mailbox {
+
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final OverflowCounters counters;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<Message> messages;
+    private SpillFile spill; // Guarded by lock, null while nothing is spilled
+    private boolean woken;   // Guarded by lock
+    private boolean closed;  // Guarded by lock
+
+    LimitedMailbox(int capacity, OverflowPolicy policy, OverflowCounters counters) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Mailbox capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        this.counters = counters;
+        this.messages = new ArrayDeque<>(Math.min(capacity, 1024));
+    }
+
+    @Override
+    public boolean offer(Message m) {
+        lock.lock();
+        try {
+            boolean waited = false;
+            while (spill != null || messages.size() >= capacity) {
+                if (closed) {
+                    return true; // Dropped, as in the mailbox of any service that unregistered
+                }
+                switch (policy) {
+                    case DROP_OLDEST:
+                        if (EventDelivery.sent(m) instanceof Broadcast) {
+                            if (!evictOldestBroadcast()) {
+                                counters.dropped(); // Only events are waiting; they are never evicted
+                                return false;
+                            }
+                            counters.dropped();
+                            continue;
+                        }
+                        counters.rejected();
+                        return false;
+                    case REJECT:
+                        counters.rejected();
+                        return false;
+                    case SPILL_TO_DISK:
+                        if (spill(m)) {
+                            return true; // Behind any messages already spilled
+                        }
+                        break; // Not serializable: wait like BLOCK
+                    default:
+                        break;
+                }
+                if (!waited) {
+                    counters.blocked();
+                    waited = true;
+                }
+                try {
+                    notFull.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt(); // Restore the interrupted status
+                    return false;
+                }
+            }
+            if (!closed) {
+                messages.add(m);
+                notEmpty.signal();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if (!awaitMessage()) {
+                return null;
+            }
+            Message m = messages.poll();
+            taken();
+            return m;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Message> sink, int max) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            return awaitMessage() ? transfer(sink, max) : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int poll(Collection<? super Message> sink, int max) {
+        lock.lock();
+        try {
+            return transfer(sink, max);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void wake() {
+        lock.lock();
+        try {
+            woken = true; // A flag rather than a message, so waking never takes up capacity
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return messages.size() + (spill == null ? 0 : spill.entries.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            messages.clear();
+            if (spill != null) {
+                spill.delete();
+                spill = null;
+            }
+            notFull.signalAll(); // Senders waiting for room drop their message
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until there is a message or the mailbox is woken.
+     * @return false if woken with no message available.
+     */
+    private boolean awaitMessage() throws InterruptedException {
+        while (messages.isEmpty()) {
+            if (woken) {
+                woken = false;
+                return false;
+            }
+            notEmpty.await();
+        }
+        return true;
+    }
+
+    private int transfer(Collection<? super Message> sink, int max) {
+        int drained = 0;
+        Message m;
+        while (drained < max && (m = messages.poll()) != null) {
+            sink.add(m);
+            drained++;
+        }
+        if (drained > 0) {
+            taken();
+        }
+        return drained;
+    }
+
+    /**
+     * Refills the freed room from the spill file and releases blocked senders.
+     */
+    private void taken() {
+        while (spill != null && messages.size() < capacity) {
+            messages.add(spill.read());
+            if (spill.entries.isEmpty()) {
+                spill.delete();
+                spill = null;
+            }
+        }
+        notFull.signalAll();
+    }
+
+    private boolean evictOldestBroadcast() {
+        for (Iterator<Message> it = messages.iterator(); it.hasNext(); ) {
+            if (EventDelivery.sent(it.next()) instanceof Broadcast) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends {@code m} to the spill file, creating it if needed.
+     * @return false if there is no spill file and {@code m} cannot be spilled.
+     */
+    private boolean spill(Message m) {
+        if (spill == null) {
+            if (!(EventDelivery.sent(m) instanceof Serializable)) {
+                return false;
+            }
+            try {
+                spill = new SpillFile();
+            } catch (IOException e) {
+                return false; // The disk is no better than waiting
+            }
+        }
+        if (spill.add(m)) {
+            counters.spilled();
+        }
+        return true;
+    }
+
+    /**
+     * Length-prefixed serialized messages, written at the end and read from the
+     * front. Only what the file cannot hold stays in memory, in the same order:
+     * the {@link Future}, receiver and send time of a spilled event's delivery,
+     * the bus clock of a spilled {@link BroadcastDelivery}, and the messages
+     * that could not be written at all.
+     */
+    private static final class SpillFile {
+
+        /**
+         * A message in the spill order.
+         */
+        private static final class Entry {
+            private final Message held;     // A message that could not be written, null if it is in the file
+            private final Future<?> future; // The Future of an event in the file, null for any other message
+            private final long sentAt;
+            private final MicroService receiver;
+            private final long clock;       // The bus clock of a delivery in the file, 0 for any other message
+
+            private Entry(Message held, Future<?> future, long sentAt, MicroService receiver, long clock) {
+                this.held = held;
+                this.future = future;
+                this.sentAt = sentAt;
+                this.receiver = receiver;
+                this.clock = clock;
+            }
+        }
+
+        private static final Entry NOT_A_DELIVERY = new Entry(null, null, 0, null, 0);
+
+        private final File file;
+        private final RandomAccessFile data;
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+        private long readPosition;
+        private long writePosition;
+
+        private SpillFile() throws IOException {
+            file = File.createTempFile("mailbox-", ".spill");
+            data = new RandomAccessFile(file, "rw");
+        }
+
+
+        /**
+         * Appends {@code m}, in the file if it can be written there.
+         * @return false if {@code m} is kept in memory instead.
+         */
+        private boolean add(Message m) {
+            Object payload = EventDelivery.sent(m);
+            if (payload instanceof Serializable) {
+                try {
+                    write(payload);
+                    if (m instanceof EventDelivery) {
+                        EventDelivery delivery = (EventDelivery) m;
+                        entries.add(new Entry(null, delivery.future, delivery.sentAt, delivery.receiver, delivery.clock));
+                    } else if (m instanceof BroadcastDelivery) {
+                        entries.add(new Entry(null, null, 0, null, ((BroadcastDelivery) m).clock));
+                    } else {
+                        entries.add(NOT_A_DELIVERY);
+                    }
+                    return true;
+                } catch (IOException e) {
+                    // Kept in memory like a message that is not serializable
+                }
+            }
+            entries.add(new Entry(m, null, 0, null, 0));
+            return false;
+        }
+
+        private void write(Object payload) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(payload);
+            }
+            data.seek(writePosition);
+            data.writeInt(bytes.size());
+            data.write(bytes.toByteArray());
+            writePosition = data.getFilePointer();
+        }
+
+        private Message read() {
+            Entry entry = entries.poll();
+            if (entry.held != null) {
+                return entry.held;
+            }
+            try {
+                data.seek(readPosition);
+                byte[] bytes = new byte[data.readInt()];
+                data.readFully(bytes);
+                readPosition = data.getFilePointer();
+                Object payload;
+                try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    payload = in.readObject();
+                }
+                if (entry.future != null) {
+                    EventDelivery delivery = new EventDelivery((Event<?>) payload, entry.future, entry.sentAt, entry.clock);
+                    delivery.receiver = entry.receiver;
+                    return delivery;
+                }
+                return entry.clock == 0 ? (Message) payload : new BroadcastDelivery((Broadcast) payload, entry.clock);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read a spilled message back from " + file, e);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Could not read a spilled message back from " + file, e);
+            }
+        }
+
+        private void delete() {
+            try {
+                data.close();
+            } catch (IOException e) {
+                // Nothing is read from it any more; deleting it is all that matters
+            }
+            file.delete();
+        }
+    }
+}
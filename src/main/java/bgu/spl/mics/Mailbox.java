@@ -0,0 +1,73 @@
+package bgu.spl.mics;
+
+import java.util.Collection;
+
+/**
+ * A Mailbox is the private message queue the {@link MessageBusImpl} allocates
+ * for every registered {@link MicroService}.
+ * <p>
+ * Many micro-services may put messages into a mailbox concurrently, but only
+ * the owning micro-service (its own event loop) ever takes messages out of it,
+ * so implementations may assume a single consumer.
+ */
+interface Mailbox {
+
+    /**
+     * Adds {@code m} to the end of the mailbox and wakes the consumer if it is
+     * waiting for a message.
+     * <p>
+     * @param m the message to add.
+     * @return false if the mailbox did not accept {@code m} (see {@link OverflowPolicy}).
+     */
+    boolean offer(Message m);
+
+    /**
+     * Takes the next message out of the mailbox, waiting until one is available
+     * or {@link #wake()} is called. May only be called by the owning micro-service.
+     * <p>
+     * @return the next message in the mailbox, or null if woken by {@link #wake()}.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    Message take() throws InterruptedException;
+
+    /**
+     * Moves up to {@code max} messages into {@code sink}, in mailbox order,
+     * waiting only if the mailbox is empty and {@link #wake()} was not called.
+     * May only be called by the owning micro-service.
+     * <p>
+     * @param sink the collection to add the messages to.
+     * @param max  the maximal number of messages to move, at least 1.
+     * @return the number of messages added to {@code sink}, 0 only if woken by {@link #wake()}.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    int drainTo(Collection<? super Message> sink, int max) throws InterruptedException;
+
+    /**
+     * Moves up to {@code max} messages into {@code sink}, in mailbox order,
+     * without waiting. May only be called by the owning micro-service.
+     * <p>
+     * @param sink the collection to add the messages to.
+     * @param max  the maximal number of messages to move.
+     * @return the number of messages added to {@code sink}, 0 if the mailbox is empty.
+     */
+    int poll(Collection<? super Message> sink, int max);
+
+    /**
+     * Makes the consumer's current or next wait return without a message, so it
+     * can look at a {@link ClockChannel}. Calls made before the consumer returns
+     * from a wait are merged into one.
+     */
+    void wake();
+
+    /**
+     * @return the number of messages currently waiting in the mailbox.
+     */
+    int size();
+
+    /**
+     * Drops the messages left in the mailbox and releases what it holds outside
+     * the heap. Called by the bus once the owning micro-service unregistered;
+     * messages offered afterwards are dropped.
+     */
+    void close();
+}
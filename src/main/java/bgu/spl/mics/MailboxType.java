@@ -0,0 +1,70 @@
+package bgu.spl.mics;
+
+/**
+ * The mailbox strategies a {@link MessageBusImpl} can allocate for its
+ * micro-services. The strategy is chosen once, when the bus is constructed,
+ * and is used for every mailbox that bus allocates.
+ */
+public enum MailboxType {
+
+    /**
+     * An unbounded {@link java.util.concurrent.LinkedBlockingDeque} per
+     * micro-service. Every send and every take goes through the deque's lock.
+     */
+    BLOCKING {
+        @Override
+        Mailbox create() {
+            return new BlockingMailbox();
+        }
+    },
+
+    /**
+     * An unbounded lock-free multi-producer/single-consumer linked queue.
+     * Senders never block, and the consumer parks only while its mailbox is empty.
+     */
+    LOCK_FREE {
+        @Override
+        Mailbox create() {
+            return new MpscMailbox();
+        }
+    },
+
+    /**
+     * A bounded array-backed queue of {@link #DEFAULT_CAPACITY} messages.
+     * Senders wait for space when the mailbox is full.
+     */
+    BOUNDED {
+        @Override
+        Mailbox create() {
+            return new BoundedMailbox(DEFAULT_CAPACITY);
+        }
+    };
+
+    /**
+     * The capacity of mailboxes created by {@link #BOUNDED}.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * @return a new, empty mailbox of this type.
+     */
+    abstract Mailbox create();
+
+    /**
+     * Resolves the mailbox type named by the {@code bgu.spl.mics.mailbox}
+     * system property, falling back to {@link #BLOCKING}.
+     * <p>
+     * @return the configured mailbox type.
+     */
+    static MailboxType fromSystemProperty() {
+        String name = System.getProperty("bgu.spl.mics.mailbox");
+        if (name == null) {
+            return BLOCKING;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown mailbox type: " + name);
+        }
+    }
+}
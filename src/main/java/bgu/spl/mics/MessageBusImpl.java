@@ -1,12 +1,10 @@
 package bgu.spl.mics;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayList;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 
 /**
  * The {@link MessageBusImpl class is the implementation of the MessageBus interface.
@@ -15,74 +13,120 @@ import java.util.Queue;
  */
 public class MessageBusImpl implements MessageBus {
 
-	private static MessageBusImpl instance = null;
-	
-	private final Map<MicroService, BlockingQueue<Message>> queues= new ConcurrentHashMap<>(); // Mapping each MicroService to its private message queue
-	private final Map<Class<? extends Event>, Queue<MicroService>> eventSubscribers = new ConcurrentHashMap<>();// Mapping each Event type to a queue of its subscribers (supports Round-Robin)
-	private final Map<Class<? extends Broadcast>, List<MicroService>> broadcastSubscribers = new ConcurrentHashMap<>(); // Mapping each Broadcast type to a list of its subscribers
-	private final Map<Event<?>, Future<?>> eventFutures = new ConcurrentHashMap<>();
+	private final MailboxType mailboxType; // The mailbox strategy used for every queue this bus allocates
+	private final Map<MicroService, Mailbox> queues= new ConcurrentHashMap<>(); // Mapping each MicroService to its private message queue
+	private final TypeTable<EventRoute> eventSubscribers = new TypeTable<>();// Mapping each Event type id (see MessageTypes) to its subscribers and round-robin cursor
+	private final TypeTable<List<MicroService>> broadcastSubscribers = new TypeTable<>(); // Mapping each Broadcast type id to a list of its subscribers
+	private final TypeTable<ClockChannel> clockChannels = new TypeTable<>(); // Mapping each ClockBroadcast type id to its channel
+	private final TypeTable<Lane> lanes = new TypeTable<>(); // Mapping message type ids to their mailbox lane; absent means DATA
+	private final EventRoute.Delivery delivery = this::deliver; // Created once rather than on every sendEvent
+	private final InFlightEvents inFlight = new InFlightEvents(); // Events taken by their receivers and not completed yet
+	private final Object clockLock = new Object(); // Serializes publishClock, so clock stamps follow the publishing order
+	private volatile long clock = 0; // The number of ClockBroadcasts published on this bus, see EventDelivery#clock
+	private final BusMetrics metrics; // Null unless -Dbgu.spl.mics.metrics=true
 
-	private MessageBusImpl(){
+	// Inner class that holds the shared instance, created on first use without locking
+	private static class MessageBusHolder {
+		private static final MessageBusImpl INSTANCE = new MessageBusImpl(MailboxType.fromSystemProperty(), true); // Selected with -Dbgu.spl.mics.mailbox=BLOCKING|LOCK_FREE|BOUNDED
+	}
 
+	/**
+	 * Creates a bus of its own, independent of {@link #getInstance()}, with the mailbox
+	 * type selected by {@code -Dbgu.spl.mics.mailbox}. Micro-services use it when it
+	 * is passed to their constructor.
+	 */
+	public MessageBusImpl() {
+		this(MailboxType.fromSystemProperty());
 	}
 
-	//Added method: thread-safe singleton
-	public static synchronized MessageBusImpl getInstance() {
-		
-        if (instance == null) {
-            instance = new MessageBusImpl();
-        }
-        return instance;
-    }
+	/**
+	 * Creates a bus of its own, independent of {@link #getInstance()}.
+	 * <p>
+	 * @param mailboxType The mailbox strategy used for every queue of this bus.
+	 */
+	public MessageBusImpl(MailboxType mailboxType) {
+		this(mailboxType, false);
+	}
+
+	private MessageBusImpl(MailboxType mailboxType, boolean shared) {
+		this.mailboxType = mailboxType;
+		this.metrics = BusMetrics.fromSystemProperty(shared); // Only the shared bus is published through JMX
+	}
+
+	//Added method: the bus shared by micro-services that are not given one
+	public static MessageBusImpl getInstance() {
+		return MessageBusHolder.INSTANCE;
+	}
 
 	@Override
 	public <T> void subscribeEvent(Class<? extends Event<T>> type, MicroService m) {
-		// Register a MicroService as a subscriber to an Event type
-        // Using Linked to facilitate Round-Robin distribution
-		eventSubscribers.computeIfAbsent(type, k -> new ConcurrentLinkedQueue<>()).add(m);
+		// Ensure the MicroService has a queue in the `queues` map before senders can pick it
+		Mailbox queue = queues.computeIfAbsent(m, k -> newMailbox());
 
-		// Ensure the MicroService has a queue in the `queues` map
-		queues.putIfAbsent(m, new LinkedBlockingDeque<>());
+		// Register a MicroService as a subscriber to an Event type
+		eventSubscribers.computeIfAbsent(MessageTypes.idOf(type), EventRoute::new).add(m, queue);
 
-		// Why ConcurrentLinkedQueue:
-		// It ensures thread safety without the need for external synchronization, unlike LinkedList.
-		// Ideal for systems where multiple threads may concurrently add or remove subscribers from the queue.
+		// Why EventRoute:
+		// Senders pick a subscriber from an immutable snapshot of the subscribers and their queues, so
+		// routing needs no allocation and no lock, and round-robin senders never pick the same turn.
 	}
 
 	@Override
 	public void subscribeBroadcast(Class<? extends Broadcast> type, MicroService m) {
+		if (ClockBroadcast.class.isAssignableFrom(type)) {
+			// Clock broadcasts are published once on a shared channel; subscribers are only woken
+			queues.computeIfAbsent(m, k -> newMailbox());
+			ClockChannel channel = clockChannel(type);
+			m.subscribedClock(channel, channel.subscribe(m));
+			return;
+		}
+
         // Register a MicroService as a subscriber to a Broadcast type
         // Using CopyOnWriteArrayList to handle concurrent reads safely
-		broadcastSubscribers.computeIfAbsent(type, k -> new CopyOnWriteArrayList<>()).add(m);
+		broadcastSubscribers.computeIfAbsent(MessageTypes.idOf(type), CopyOnWriteArrayList::new).add(m);
 
 		// Why CopyOnWriteArrayList: Ideal for scenarios with frequent reads and infrequent writes
         // Provides thread-safe operations without external synchronization
 
 		 // Ensure the MicroService has a queue in the `queues` map
-		 queues.putIfAbsent(m, new LinkedBlockingDeque<>());
+		 queues.computeIfAbsent(m, k -> newMailbox());
 	}
 
 	@Override
+	@SuppressWarnings("unchecked") // sendEvent created the Future of e as a Future<T>
 	public <T> void complete(Event<T> e, T result) {
-		Future<T> future = (Future<T>) eventFutures.get(e); // Retrieve the Future
-		if (future != null) {
-			future.resolve(result); // Mark the Future as completed
-			eventFutures.remove(e); // Optional: remove the Event-Future mapping
+		// The Future travels with the event to its receiver (see EventDelivery), which records the delivery
+		// in inFlight when it takes the event; e is found there by identity, from any thread
+		EventDelivery delivered = inFlight.remove(e);
+		if (delivered != null) {
+			((Future<T>) delivered.future).resolve(result); // Mark the Future as completed
 		}
 	}
 
+	//Added method: called by a service when it takes an event from its queue, before handling it
+	void received(EventDelivery delivered) {
+		inFlight.add(delivered);
+	}
+
 	@Override
 	public void sendBroadcast(Broadcast b) {
-		List<MicroService> subscribers = broadcastSubscribers.get(b.getClass());// Take the list of the type of broadcast we want to send.
+		if (b instanceof ClockBroadcast) {
+			publishClock(b);
+			return;
+		}
+		List<MicroService> subscribers = broadcastSubscribers.get(MessageTypes.idOf(b.getClass()));// Take the list of the type of broadcast we want to send.
 		if (subscribers == null) {
 			return;
 		}
+		// Once clock broadcasts exist, receivers need the clock of the send to handle b in its turn among them
+		long sentClock = clock;
+		Message message = sentClock == 0 ? b : new BroadcastDelivery(b, sentClock);
 
 		// Add the Broadcast to the queue of each subscriber
 		for (MicroService m : subscribers){
-			BlockingQueue<Message> queue = queues.get(m);
+			Mailbox queue = queues.get(m);
 			if (queue != null) {
-				queue.offer(b);
+				deliver(m, queue, message);
 			}
 
 		}
@@ -91,21 +135,18 @@ public class MessageBusImpl implements MessageBus {
 	
 	@Override
 	public <T> Future<T> sendEvent(Event<T> e) {
-		Queue<MicroService> subscribers = eventSubscribers.get(e.getClass()); // Take the queue of the type of event we want to send.
-		if (subscribers == null || subscribers.isEmpty()) { 
+		EventRoute subscribers = eventSubscribers.get(MessageTypes.idOf(e.getClass())); // Take the subscribers of the type of event we want to send.
+		if (subscribers == null) {
 			return null; // No subscribers for this Event
 		}
 
-		//Select the next MicroService to handle the event
-		MicroService m = subscribers.poll();
-		subscribers.offer(m);
-
-		//Create a new Future object
+		//Create a new Future object, delivered together with the event
 		Future<T> future = new Future<>();
-		eventFutures.put(e, future); // 
 
-		//Add the event to the selected MicroService's queue
-		queues.get(m).offer(e);
+		//Select the MicroService to handle the event (see RoutingPolicy) and add the event to its queue
+		if (!subscribers.route(e, new EventDelivery(e, future, metrics != null ? System.nanoTime() : 0L, clock), delivery)) {
+			return null; // No subscribers for this Event
+		}
 
 		return future;
 	}
@@ -113,32 +154,241 @@ public class MessageBusImpl implements MessageBus {
 	@Override
 	public void register(MicroService m) {
 		// Add new entries only if they don't exist
-		queues.putIfAbsent(m, new LinkedBlockingDeque<>());
+		queues.computeIfAbsent(m, k -> newMailbox());
 
-		// Why BlockingQueue: Provides a thread-safe queue with blocking operations
-        // Combined with ConcurrentHashMap to eliminate external synchronization
+		// Why a Mailbox: each MicroService is the only consumer of its own queue, so the
+		// mailbox strategy (see MailboxType) can exploit that; the ConcurrentHashMap
+		// eliminates external synchronization around the lookup
+		// Why a LanedMailbox: control messages (see setLane) must not wait behind a backlog of data events
 
 	}
 
 	@Override
 	public void unregister(MicroService m) {
-		// Remove the MicroService's queue
-    	queues.remove(m);
-
-    	// Remove the MicroService from all Event subscriber lists
-    	eventSubscribers.values().forEach(queue -> queue.remove(m));
+    	// Remove the MicroService from all Event subscriber lists, so senders stop picking it
+    	eventSubscribers.forEach(route -> route.remove(m));
 
     	// Remove the MicroService from all Broadcast subscriber lists
-    	broadcastSubscribers.values().forEach(list -> list.remove(m));
+    	broadcastSubscribers.forEach(list -> list.remove(m));
+    	clockChannels.forEach(channel -> channel.unsubscribe(m));
+
+    	// Forget the events it received and never completed; their Futures stay unresolved
+    	inFlight.removeAll(m);
+
+    	// Remove the MicroService's queue, and release what it holds (see LimitedMailbox)
+    	Mailbox queue = queues.remove(m);
+    	if (queue != null) {
+    		queue.close();
+    	}
 	}
 
 	@Override
 	public Message awaitMessage(MicroService m) throws InterruptedException {
-		BlockingQueue<Message> queue = queues.get(m);
+		Mailbox queue = queues.get(m);
+		if (queue == null) {
+			throw new IllegalStateException("MicroService not registered");
+		}
+		Message message = m.takeAwaited(); // Taken by an earlier call, which returned a clock broadcast instead
+		if (message == null) {
+			List<Message> next = new ArrayList<>(1);
+			message = queue.poll(next, 1) > 0 ? next.get(0) : null;
+		}
+		while (message == null) {
+			// Clock broadcasts are not queued (see ClockChannel): m reads them from its cursors
+			Broadcast tick = m.nextClock(Long.MAX_VALUE);
+			if (tick != null) {
+				return tick;
+			}
+			message = queue.take(); // Waits until a message is available; null after a clock wakeup
+		}
+		// Clock broadcasts published before the message was sent come first, as in MicroService
+		Broadcast tick = m.nextClock(EventDelivery.clockOf(message));
+		if (tick != null) {
+			m.setAwaited(message);
+			return tick;
+		}
+		if (message instanceof EventDelivery) {
+			inFlight.add((EventDelivery) message); // So that complete() finds its Future
+		}
+		return EventDelivery.sent(message);
+	}
+
+	//Added method: batch variant of awaitMessage used by the MicroService event loop
+	/**
+	 * Moves up to {@code max} messages from {@code m}'s queue into {@code sink},
+	 * blocking only while the queue is empty. Events are returned as
+	 * {@link EventDelivery}s and broadcasts may be returned as {@link BroadcastDelivery}s,
+	 * which the caller must unwrap.
+	 * <p>
+	 * @param m    The micro-service requesting its messages.
+	 * @param sink The list the messages are appended to, in queue order.
+	 * @param max  The maximal number of messages to take, at least 1.
+	 * @return The number of messages appended to {@code sink}.
+	 * @throws InterruptedException if interrupted while waiting for a message.
+	 */
+	public int awaitMessages(MicroService m, List<Message> sink, int max) throws InterruptedException {
+		Mailbox queue = queues.get(m);
 		if (queue == null) {
 			throw new IllegalStateException("MicroService not registered");
 		}
-		return queue.take(); // Waits until a message is available
+		return queue.drainTo(sink, max);
+	}
+
+	//Added method: non-blocking variant used when the MicroService runs on an ActorScheduler
+	/**
+	 * Moves up to {@code max} messages from {@code m}'s queue into {@code sink}
+	 * without waiting. Events are returned as {@link EventDelivery}s and broadcasts
+	 * may be returned as {@link BroadcastDelivery}s, which the caller must unwrap.
+	 * <p>
+	 * @param m    The micro-service requesting its messages.
+	 * @param sink The list the messages are appended to, in queue order.
+	 * @param max  The maximal number of messages to take.
+	 * @return The number of messages appended to {@code sink}, 0 if the queue is empty
+	 *         or {@code m} is not registered.
+	 */
+	public int pollMessages(MicroService m, List<Message> sink, int max) {
+		Mailbox queue = queues.get(m);
+		return queue == null ? 0 : queue.poll(sink, max);
+	}
+
+	//Added method: whether a poll would return at least one message
+	boolean hasMessages(MicroService m) {
+		Mailbox queue = queues.get(m);
+		return queue != null && queue.size() > 0;
+	}
+
+	//Added method: choose how events of one type are spread over their subscribers
+	/**
+	 * Sets the policy used to pick the subscriber of each sent event of type {@code type}.
+	 * Until it is called, events are routed {@link RoutingPolicy#ROUND_ROBIN round-robin}.
+	 * <p>
+	 * @param type   The event type.
+	 * @param policy The routing policy.
+	 */
+	public void setRoutingPolicy(Class<? extends Event<?>> type, RoutingPolicy policy) {
+		eventSubscribers.computeIfAbsent(MessageTypes.idOf(type), EventRoute::new).setPolicy(policy);
+	}
+
+	//Added method: how deep the chosen queues were, to compare routing policies
+	/**
+	 * Returns a histogram of the queue depth of the chosen subscriber, at the time
+	 * each event of type {@code type} was routed. Element 0 counts events that found
+	 * an empty queue, element {@code i > 0} counts depths from {@code 2^(i-1)} to
+	 * {@code 2^i - 1}, and the last element also counts everything deeper.
+	 * <p>
+	 * @param type The event type.
+	 * @return The histogram, all zeros if no event of type {@code type} was sent.
+	 */
+	public long[] getQueueDepthHistogram(Class<? extends Event<?>> type) {
+		EventRoute route = eventSubscribers.get(MessageTypes.idOf(type));
+		return route == null ? new long[EventRoute.DEPTH_BUCKETS] : route.depthHistogram();
+	}
+
+	//Added method: bound the mailbox of one service
+	/**
+	 * Gives {@code m} a mailbox holding at most {@code capacity} messages, instead of
+	 * an unbounded one, and applies {@code policy} to messages sent to it while it is full.
+	 * Must be called before {@code m} registers or subscribes to anything.
+	 * <p>
+	 * @param m        The micro-service whose mailbox is limited.
+	 * @param capacity The maximal number of messages kept in memory, at least 1.
+	 * @param policy   What happens to a message sent while the mailbox is full.
+	 * @return The counters of the sends that found the mailbox full; they stay valid after {@code m} unregisters.
+	 * @throws IllegalStateException if {@code m} already has a mailbox.
+	 */
+	public OverflowCounters limitMailbox(MicroService m, int capacity, OverflowPolicy policy) {
+		OverflowCounters counters = new OverflowCounters();
+		if (queues.putIfAbsent(m, new LanedMailbox(new LimitedMailbox(capacity, policy, counters), lanes)) != null) {
+			throw new IllegalStateException(m.getName() + " already has a mailbox");
+		}
+		return counters;
+	}
+
+	//Added method: let one message type overtake others in every mailbox
+	/**
+	 * Puts messages of type {@code type} on {@code lane} of their receivers' mailboxes:
+	 * a message is only handed to its receiver once the earlier lanes are empty (see {@link Lane}).
+	 * Until it is called, every type is on {@link Lane#DATA}.
+	 * <p>
+	 * @param type The message type.
+	 * @param lane The lane its messages are queued on.
+	 * @throws IllegalArgumentException if {@code type} is a {@link ClockBroadcast}, which is never queued.
+	 */
+	public void setLane(Class<? extends Message> type, Lane lane) {
+		if (ClockBroadcast.class.isAssignableFrom(type)) {
+			throw new IllegalArgumentException(type.getSimpleName() + " is published on a clock channel, not queued on a lane");
+		}
+		lanes.put(MessageTypes.idOf(type), lane);
+	}
+
+	//Added method: what the bus has measured
+	/**
+	 * @return The metrics recorded by this bus (also available through JMX), or null
+	 *         unless it was started with {@code -Dbgu.spl.mics.metrics=true}.
+	 */
+	public BusMetrics getMetrics() {
+		return metrics;
+	}
+
+	//Added method: the channel a ClockBroadcast type is published on
+	ClockChannel clockChannel(Class<?> type) {
+		int typeId = MessageTypes.idOf(type);
+		ClockChannel channel = clockChannels.get(typeId);
+		return channel != null ? channel : clockChannels.computeIfAbsent(typeId, ClockChannel::new);
+	}
+
+	/**
+	 * Publishes {@code b} once on its channel and wakes every subscriber, instead of
+	 * adding it to each subscriber's queue.
+	 */
+	private void publishClock(Broadcast b) {
+		ClockChannel channel = clockChannel(b.getClass());
+		synchronized (clockLock) {
+			long published = clock + 1;
+			channel.publish(b, published);
+			clock = published; // Only now: a message sent with this clock must find b on its channel
+		}
+		for (ClockChannel.Cursor cursor : channel.cursors()) {
+			MicroService m = cursor.service;
+			Mailbox queue = queues.get(m);
+			if (queue != null) {
+				if (metrics != null) {
+					metrics.of(m, b.getClass()).sent(queue.size());
+				}
+				queue.wake();
+				m.messageArrived();
+			}
+		}
+	}
+
+	private Mailbox newMailbox() {
+		return new LanedMailbox(mailboxType.create(), lanes);
+	}
+
+	/**
+	 * Puts {@code message} in {@code queue}, the mailbox of {@code m}.
+	 * @return false if {@code m} unregistered before the message was in its queue, so it will never be handled.
+	 */
+	private boolean deliver(MicroService m, Mailbox queue, Message message) {
+		if (metrics != null) {
+			metrics.of(m, EventDelivery.sent(message).getClass()).sent(queue.size());
+		}
+		if (message instanceof EventDelivery) {
+			((EventDelivery) message).receiver = m; // Published to m by the queue
+		}
+		if (!queue.offer(message)) {
+			// A full limited mailbox refused it (see OverflowPolicy); the sender of an event finds out through its Future
+			if (message instanceof EventDelivery) {
+				((EventDelivery) message).future.fail(new RejectedExecutionException("The mailbox of " + m.getName() + " is full"));
+			}
+			return true;
+		}
+		if (queues.get(m) != queue) {
+			// m unregistered after it was picked: it stopped reading its queue, so the message is orphaned
+			return false;
+		}
+		m.messageArrived(); // Lets an ActorScheduler know the service has work to do
+		return true;
 	}
 
 	
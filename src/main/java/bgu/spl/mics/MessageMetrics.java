@@ -0,0 +1,41 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of one message type received by one micro-service (by name):
+ * how many were sent to it and dispatched, how deep its mailbox was at each
+ * send, how long they waited in the mailbox and how long their callbacks ran.
+ */
+final class MessageMetrics {
+
+    final String service;
+    final Class<?> type;
+    final LongAdder sent = new LongAdder();
+    final LongAdder dispatched = new LongAdder();
+    final LogHistogram queueDepth = new LogHistogram();
+    final LogHistogram queueLatency = new LogHistogram();  // Nanoseconds from send to dispatch, for timestamped messages
+    final LogHistogram callbackTime = new LogHistogram();  // Nanoseconds
+
+    MessageMetrics(String service, Class<?> type) {
+        this.service = service;
+        this.type = type;
+    }
+
+    void sent(int depth) {
+        sent.increment();
+        queueDepth.record(depth);
+    }
+
+    /**
+     * @param sentAt    the {@link System#nanoTime()} of the send, 0 if unknown.
+     * @param startedAt the {@link System#nanoTime()} the callback started.
+     */
+    void dispatched(long sentAt, long startedAt) {
+        dispatched.increment();
+        if (sentAt != 0) {
+            queueLatency.record(startedAt - sentAt);
+        }
+        callbackTime.record(System.nanoTime() - startedAt);
+    }
+}
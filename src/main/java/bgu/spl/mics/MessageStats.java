@@ -0,0 +1,70 @@
+package bgu.spl.mics;
+
+/**
+ * A snapshot of the metrics of one message type received by one micro-service,
+ * as reported by {@link BusMetrics}. Times are in microseconds; percentiles are
+ * accurate to within 12.5%.
+ */
+public final class MessageStats {
+
+    private final String service;
+    private final String messageType;
+    private final long sent;
+    private final long dispatched;
+    private final double sendRate;
+    private final double queueDepthMean;
+    private final long queueDepthMax;
+    private final long queueLatencyP50;
+    private final long queueLatencyP99;
+    private final long queueLatencyMax;
+    private final long callbackP50;
+    private final long callbackP99;
+    private final long callbackMax;
+
+    MessageStats(MessageMetrics metrics, long elapsedNanos) {
+        service = metrics.service;
+        messageType = metrics.type.getSimpleName();
+        sent = metrics.sent.sum();
+        dispatched = metrics.dispatched.sum();
+        sendRate = elapsedNanos > 0 ? sent * 1e9 / elapsedNanos : 0;
+        queueDepthMean = metrics.queueDepth.mean();
+        queueDepthMax = metrics.queueDepth.max();
+        queueLatencyP50 = micros(metrics.queueLatency.valueAt(0.5));
+        queueLatencyP99 = micros(metrics.queueLatency.valueAt(0.99));
+        queueLatencyMax = micros(metrics.queueLatency.max());
+        callbackP50 = micros(metrics.callbackTime.valueAt(0.5));
+        callbackP99 = micros(metrics.callbackTime.valueAt(0.99));
+        callbackMax = micros(metrics.callbackTime.max());
+    }
+
+    /** @return the name of the receiving micro-service. */
+    public String getService() {return service;}
+    /** @return the simple name of the message class. */
+    public String getMessageType() {return messageType;}
+    /** @return the number of messages sent to the service. */
+    public long getSent() {return sent;}
+    /** @return the number of messages whose callback ran. */
+    public long getDispatched() {return dispatched;}
+    /** @return the messages sent per second since metrics started. */
+    public double getSendRate() {return sendRate;}
+    /** @return the mean number of messages in the mailbox when one was sent. */
+    public double getQueueDepthMean() {return queueDepthMean;}
+    /** @return the deepest the mailbox was when one was sent. */
+    public long getQueueDepthMax() {return queueDepthMax;}
+    /** @return the median time from send to dispatch; events and clock broadcasts only. */
+    public long getQueueLatencyP50() {return queueLatencyP50;}
+    /** @return the 99th percentile time from send to dispatch; events and clock broadcasts only. */
+    public long getQueueLatencyP99() {return queueLatencyP99;}
+    /** @return the longest time from send to dispatch; events and clock broadcasts only. */
+    public long getQueueLatencyMax() {return queueLatencyMax;}
+    /** @return the median callback running time. */
+    public long getCallbackP50() {return callbackP50;}
+    /** @return the 99th percentile callback running time. */
+    public long getCallbackP99() {return callbackP99;}
+    /** @return the longest callback running time. */
+    public long getCallbackMax() {return callbackMax;}
+
+    private static long micros(long nanos) {
+        return nanos / 1000;
+    }
+}
@@ -0,0 +1,38 @@
+package bgu.spl.mics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns every message class a small, dense integer id, so that the
+ * {@link MessageBusImpl} and {@link MicroService} can keep per-type data in
+ * arrays instead of maps keyed by {@link Class}.
+ * <p>
+ * Ids are handed out the first time a class is seen (normally when a service
+ * subscribes to it) and never change. Looking an id up again goes through a
+ * {@link ClassValue}, which caches it on the class itself.
+ */
+final class MessageTypes {
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+    private static final Map<Class<?>, Integer> assigned = new ConcurrentHashMap<>(); // Makes the assignment exactly-once
+
+    private static final ClassValue<Integer> ids = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            return assigned.computeIfAbsent(type, k -> nextId.getAndIncrement());
+        }
+    };
+
+    private MessageTypes() {
+    }
+
+    /**
+     * @param type a message class.
+     * @return the id of {@code type}.
+     */
+    static int idOf(Class<?> type) {
+        return ids.get(type);
+    }
+}
@@ -1,8 +1,8 @@
 package bgu.spl.mics;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * The MicroService is an abstract class that any micro-service in the system
@@ -19,14 +19,27 @@ import java.util.concurrent.ConcurrentHashMap;
  * method). The abstract MicroService stores this callback together with the
  * type of the message is related to.
  * 
- * Only private fields and methods may be added to this class.
+ * Only private fields and methods may be added to this class, besides the
+ * constructors that take the {@link MessageBus} to use or a batch size, and
+ * the package-private hooks through which {@link MessageBusImpl} and
+ * {@link ActorScheduler} drive the event loop. Neither adds anything derived
+ * classes can call from their callbacks.
  * <p>
  */
 public abstract class MicroService implements Runnable {
 
+    private static final int DEFAULT_BATCH_SIZE = Integer.getInteger("bgu.spl.mics.batchSize", 1);
+
     private boolean terminated = false;
     private final String name;
-    private final Map<Class<? extends Message>, Callback<? extends Message>> callbacks = new  ConcurrentHashMap<>();
+    private final MessageBus bus; // The bus this service registers on and sends through
+    private final MessageBusImpl busImpl; // The same bus if it is a MessageBusImpl, whose hooks the event loop uses; null otherwise
+    private final int batchSize; // The maximal number of messages taken from the message-bus per wakeup
+    private volatile Runnable onMessage; // Set while the service runs on an ActorScheduler
+    private Callback<?>[] callbacks = new Callback<?>[8]; // Indexed by MessageTypes id; only touched by the service's own thread
+    private ClockSubscription[] clocks = new ClockSubscription[0]; // Subscribed ClockBroadcast types, see ClockChannel
+    private final TypeTable<MessageMetrics> metrics = new TypeTable<>(); // This service's entries of BusMetrics, by type id
+    private Message awaited; // Taken by MessageBusImpl.awaitMessage behind clock broadcasts published before it
 
 
     /**
@@ -34,7 +47,48 @@ public abstract class MicroService implements Runnable {
      *             does not have to be unique)
      */
     public MicroService(String name) {
+        this(name, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param name the micro-service name (used mainly for debugging purposes -
+     *             does not have to be unique)
+     * @param bus  the message-bus the service registers on and sends through,
+     *             instead of the shared {@link MessageBusImpl#getInstance()}.
+     *             Only a {@link MessageBusImpl} takes messages in batches and
+     *             can run the service on an {@link ActorScheduler}; any other
+     *             bus is used through the {@link MessageBus} methods alone.
+     */
+    public MicroService(String name, MessageBus bus) {
+        this(name, DEFAULT_BATCH_SIZE, bus);
+    }
+
+    /**
+     * @param name      the micro-service name (used mainly for debugging purposes -
+     *                  does not have to be unique)
+     * @param batchSize the maximal number of queued messages the event loop
+     *                  takes from the message-bus at once and dispatches
+     *                  back-to-back. 1 takes a single message per wakeup;
+     *                  the default is set by {@code -Dbgu.spl.mics.batchSize}.
+     */
+    public MicroService(String name, int batchSize) {
+        this(name, batchSize, MessageBusImpl.getInstance());
+    }
+
+    /**
+     * @param name      the micro-service name (used mainly for debugging purposes -
+     *                  does not have to be unique)
+     * @param batchSize see {@link #MicroService(String, int)}.
+     * @param bus       see {@link #MicroService(String, MessageBus)}.
+     */
+    public MicroService(String name, int batchSize, MessageBus bus) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1, got " + batchSize);
+        }
         this.name = name;
+        this.batchSize = batchSize;
+        this.bus = bus;
+        this.busImpl = bus instanceof MessageBusImpl ? (MessageBusImpl) bus : null;
     }
 
     /**
@@ -59,8 +113,8 @@ public abstract class MicroService implements Runnable {
      *                 queue.
      */
     protected final <T, E extends Event<T>> void subscribeEvent(Class<E> type, Callback<E> callback) {
-        MessageBusImpl.getInstance().subscribeEvent(type, this);
-        callbacks.put(type, callback);
+        bus.subscribeEvent(type, this);
+        setCallback(type, callback);
     }
 
     /**
@@ -84,8 +138,12 @@ public abstract class MicroService implements Runnable {
      *                 queue.
      */
     protected final <B extends Broadcast> void subscribeBroadcast(Class<B> type, Callback<B> callback) {
-        MessageBusImpl.getInstance().subscribeBroadcast(type, this);
-        callbacks.put(type, callback);
+        bus.subscribeBroadcast(type, this);
+        if (busImpl != null && ClockBroadcast.class.isAssignableFrom(type)) {
+            clockSubscription(busImpl.clockChannel(type)).setCallback(callback); // Added by the bus, see subscribedClock
+            return;
+        }
+        setCallback(type, callback);
     }
 
     /**
@@ -101,7 +159,7 @@ public abstract class MicroService implements Runnable {
      * 	       			null in case no micro-service has subscribed to {@code e.getClass()}.
      */
     protected final <T> Future<T> sendEvent(Event<T> e) {
-        return MessageBusImpl.getInstance().sendEvent(e);
+        return bus.sendEvent(e);
     }
 
     /**
@@ -111,7 +169,7 @@ public abstract class MicroService implements Runnable {
      * @param b The broadcast message to send
      */
     protected final void sendBroadcast(Broadcast b) {
-        MessageBusImpl.getInstance().sendBroadcast(b);
+        bus.sendBroadcast(b);
    }
 
     /**
@@ -125,7 +183,7 @@ public abstract class MicroService implements Runnable {
      *               {@code e}.
      */
     protected final <T> void complete(Event<T> e, T result) {
-        MessageBusImpl.getInstance().complete(e, result);
+        bus.complete(e, result);
     }
 
     /**
@@ -155,22 +213,289 @@ public abstract class MicroService implements Runnable {
      */
     @Override
     public final void run() {
-        MessageBusImpl.getInstance().register(this);
+        bus.register(this);
         initialize();
+        List<Message> batch = new ArrayList<>(batchSize);
         while (!terminated) {
             try {
-                Message message = MessageBusImpl.getInstance().awaitMessage(this); //If there is no message in the queue, it waits until there is a message.
-                Callback<Message> callBack = (Callback<Message>) callbacks.get(message.getClass());//Receiving the message
-                if (callBack != null) {//Checks if there is a suitable callback in the callbacks map.
-                    callBack.call(message); //Message processing
+                if (busImpl != null) {
+                    busImpl.awaitMessages(this, batch, batchSize); //Takes every queued message (up to batchSize); waits only if there is none.
+                } else {
+                    batch.add(bus.awaitMessage(this)); //Any other bus: one message at a time, through the MessageBus interface
                 }
+                dispatch(batch, Integer.MAX_VALUE); //Clock broadcasts published meanwhile are handled in between, see dispatch
             } catch (InterruptedException e) {
                 terminate();
+            } finally {
+                batch.clear();
             }
         }
         //Resource cleaning:
-        MessageBusImpl.getInstance().unregister(this);
+        bus.unregister(this);
+
+    }
+
+    /**
+     * Calls the callback of the messages in {@code batch}, in order, and of the clock
+     * broadcasts published meanwhile, until {@code budget} callbacks ran.
+     * <p>
+     * Each message carries the bus clock of its send (see {@link EventDelivery#clock}):
+     * the clock broadcasts published before it are handled before it, and the others
+     * after it. Clock broadcasts published after the last message are handled last,
+     * unless more messages are queued: those may have been sent before them.
+     * Messages left after terminate() are dropped, as they would be in the queue.
+     * @return the number of messages of {@code batch} that were handled.
+     */
+    private int dispatch(List<Message> batch, int budget) {
+        int handled = 0;
+        while (handled < batch.size() && !terminated) {
+            Message message = batch.get(handled);
+            budget -= dispatchClocks(EventDelivery.clockOf(message), budget);
+            if (budget == 0 || terminated) {
+                return handled;
+            }
+            dispatch(message);
+            handled++;
+            budget--;
+        }
+        if (busImpl == null || !busImpl.hasMessages(this)) {
+            dispatchClocks(Long.MAX_VALUE, budget);
+        }
+        return handled;
+    }
+
+    private void dispatch(Message message) {
+        EventDelivery delivered = null;
+        if (message instanceof EventDelivery) { //Events arrive together with their Future
+            delivered = (EventDelivery) message;
+            busImpl.received(delivered); //So that complete() finds its Future, from any thread; only a MessageBusImpl queues EventDeliveries
+        }
+        message = EventDelivery.sent(message);
+        Callback<Message> callBack = callbackOf(message);//Receiving the message
+        BusMetrics busMetrics = busMetrics();
+        long startedAt = busMetrics != null ? System.nanoTime() : 0L;
+        try {
+            if (callBack != null) {//Checks if there is a suitable callback in the callbacks table.
+                callBack.call(message); //Message processing
+            }
+        } finally {
+            if (busMetrics != null) {
+                busMetrics.of(this, message.getClass()).dispatched(delivered != null ? delivered.sentAt : 0L, startedAt);
+            }
+        }
+    }
+
+    private BusMetrics busMetrics() {
+        return busImpl != null ? busImpl.getMetrics() : null;
+    }
+
+    /**
+     * @return the callback subscribed for the type of {@code message}, or null if there is none.
+     */
+    @SuppressWarnings("unchecked") // subscribeEvent and subscribeBroadcast store a Callback<M> at the id of M
+    private Callback<Message> callbackOf(Message message) {
+        int typeId = MessageTypes.idOf(message.getClass());
+        return typeId < callbacks.length ? (Callback<Message>) callbacks[typeId] : null;
+    }
+
+    /**
+     * Calls the callback of the clock broadcasts published with a bus clock of at most {@code upTo}
+     * that this service has not read, in the order they were published, until {@code budget} ran.
+     * @return the number of callbacks that ran.
+     */
+    private int dispatchClocks(long upTo, int budget) {
+        if (busImpl == null) {
+            return 0; // Any other bus returns clock broadcasts from awaitMessage, like other messages
+        }
+        int called = 0;
+        ClockSubscription clock;
+        while (called < budget && !terminated && (clock = nextDue(upTo)) != null) {
+            long next = clock.cursor.seen() + 1;
+            Broadcast tick = clock.channel.get(next);
+            long publishedAt = clock.channel.publishedAt(next);
+            clock.cursor.read(next); // Only now may the channel reuse the slot
+            if (clock.callback == null) {
+                continue;
+            }
+            BusMetrics busMetrics = busMetrics();
+            long startedAt = busMetrics != null ? System.nanoTime() : 0L;
+            clock.callback.call(tick);
+            if (busMetrics != null) {
+                busMetrics.of(this, tick.getClass()).dispatched(publishedAt, startedAt);
+            }
+            called++;
+        }
+        return called;
+    }
+
+    /**
+     * @return the subscription whose next unread broadcast was published first, if that was
+     *         with a bus clock of at most {@code upTo}; null otherwise.
+     */
+    private ClockSubscription nextDue(long upTo) {
+        ClockSubscription due = null;
+        long dueClock = upTo;
+        for (ClockSubscription clock : clocks) {
+            long next = clock.cursor.seen() + 1;
+            if (next <= clock.channel.sequence() && clock.channel.clock(next) <= dueClock) {
+                due = clock;
+                dueClock = clock.channel.clock(next);
+            }
+        }
+        return due;
+    }
+
+    private boolean clocksPending() {
+        for (ClockSubscription clock : clocks) {
+            if (clock.cursor.seen() < clock.channel.sequence()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ClockSubscription clockSubscription(ClockChannel channel) {
+        for (ClockSubscription clock : clocks) {
+            if (clock.channel == channel) {
+                return clock;
+            }
+        }
+        throw new IllegalStateException(name + " is not subscribed to the channel"); // The bus adds it when subscribing
+    }
+
+    private static final class ClockSubscription {
+        private final ClockChannel channel;
+        private final ClockChannel.Cursor cursor; // Where this service is in the channel
+        private Callback<Broadcast> callback;     // Null if the service subscribed through the bus only
+
+        private ClockSubscription(ClockChannel channel, ClockChannel.Cursor cursor) {
+            this.channel = channel;
+            this.cursor = cursor;
+        }
+
+        @SuppressWarnings("unchecked") // subscribeBroadcast passes the Callback<B> of the channel's type B
+        private void setCallback(Callback<?> callback) {
+            this.callback = (Callback<Broadcast>) callback;
+        }
+    }
+
+    private void setCallback(Class<? extends Message> type, Callback<?> callback) {
+        int typeId = MessageTypes.idOf(type);
+        if (typeId >= callbacks.length) {
+            callbacks = Arrays.copyOf(callbacks, Math.max(callbacks.length * 2, typeId + 1));
+        }
+        callbacks[typeId] = callback;
+    }
+
+    // --------------------- ActorScheduler support --------------------
+    // Instead of run(), an ActorScheduler calls startActor() once and then runActorBatch()
+    // each time the service's queue becomes non-empty, always from one pool thread at a time.
+
+    /**
+     * Registers the service, runs initialize() and installs {@code onMessage}
+     * to be called whenever a message is added to the service's queue.
+     * @return true if the service terminated during initialize().
+     */
+    final boolean startActor(Runnable onMessage) {
+        if (busImpl == null) {
+            throw new IllegalStateException(name + " must be on a MessageBusImpl to run on an ActorScheduler");
+        }
+        this.onMessage = onMessage;
+        bus.register(this);
+        initialize();
+        return terminated;
+    }
+
+    /**
+     * Runs up to {@code max} callbacks, of queued messages and clock broadcasts, without waiting for more.
+     * The messages taken from the queue but not handled yet stay at the start of {@code batch}, for the next call.
+     * @return true if the service terminated while handling them.
+     */
+    final boolean runActorBatch(List<Message> batch, int max) {
+        if (batch.isEmpty()) {
+            busImpl.pollMessages(this, batch, max);
+        }
+        batch.subList(0, dispatch(batch, max)).clear();
+        return terminated;
+    }
+
+    /**
+     * @return true if there are messages waiting in the service's queue.
+     */
+    final boolean hasMessages() {
+        return busImpl.hasMessages(this) || clocksPending();
+    }
+
+    /**
+     * Unregisters the service after it terminated on an ActorScheduler.
+     */
+    final void stopActor() {
+        onMessage = null;
+        bus.unregister(this);
+    }
+
+    /**
+     * @return this service's entries of the bus metrics, see {@link BusMetrics#of(MicroService, Class)}.
+     */
+    final TypeTable<MessageMetrics> metrics() {
+        return metrics;
+    }
 
+    /**
+     * Called by the message-bus when this service subscribes to a {@link ClockBroadcast} type,
+     * with the service's cursor in the type's channel. Anything published after that is
+     * delivered, even without a wakeup.
+     */
+    final void subscribedClock(ClockChannel channel, ClockChannel.Cursor cursor) {
+        for (ClockSubscription clock : clocks) {
+            if (clock.channel == channel) {
+                return;
+            }
+        }
+        clocks = Arrays.copyOf(clocks, clocks.length + 1);
+        clocks[clocks.length - 1] = new ClockSubscription(channel, cursor);
+    }
+
+    /**
+     * Marks the first published clock broadcast this service has not read as read, without calling its
+     * callback, if it was published with a bus clock of at most {@code upTo}.
+     * @return that broadcast, or null if there is none.
+     */
+    final Broadcast nextClock(long upTo) {
+        ClockSubscription clock = nextDue(upTo);
+        if (clock == null) {
+            return null;
+        }
+        long next = clock.cursor.seen() + 1;
+        Broadcast tick = clock.channel.get(next);
+        clock.cursor.read(next);
+        return tick;
+    }
+
+    /**
+     * @return the message {@link MessageBusImpl#awaitMessage} took but did not return yet, or null; forgets it.
+     */
+    final Message takeAwaited() {
+        Message message = awaited;
+        awaited = null;
+        return message;
+    }
+
+    /**
+     * Keeps {@code message}, taken by {@link MessageBusImpl#awaitMessage}, to be returned by its next call.
+     */
+    final void setAwaited(Message message) {
+        awaited = message;
+    }
+
+    /**
+     * Called by the message-bus after adding a message to this service's queue.
+     */
+    final void messageArrived() {
+        Runnable hook = onMessage;
+        if (hook != null) {
+            hook.run();
+        }
     }
 
 }
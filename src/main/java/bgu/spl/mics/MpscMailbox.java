@@ -0,0 +1,135 @@
+package bgu.spl.mics;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free multi-producer/single-consumer mailbox.
+ * <p>
+ * Producers append by swapping the tail node and then linking the previous
+ * tail to the new node; the single consumer walks from the head without any
+ * atomic operation. When the mailbox is empty the consumer publishes itself
+ * as the waiter and parks, and a producer that sees a waiter after linking its
+ * node unparks it.
+ */
+final class MpscMailbox implements Mailbox {
+
+    private static final class Node {
+        private volatile Node next;
+        private Message value;
+
+        private Node(Message value) {
+            this.value = value;
+        }
+    }
+
+    private final AtomicReference<Node> tail;
+    private final AtomicInteger size = new AtomicInteger();
+    private Node head; // Only touched by the consumer
+    private volatile Thread waiter;
+    private volatile boolean woken;
+
+    MpscMailbox() {
+        Node stub = new Node(null);
+        this.head = stub;
+        this.tail = new AtomicReference<>(stub);
+    }
+
+    @Override
+    public boolean offer(Message m) {
+        Node node = new Node(m);
+        size.incrementAndGet(); // Before linking, so the consumer never takes a message it was not counted for
+        tail.getAndSet(node).next = node; // Link after swapping, so the consumer never sees a broken chain past `next`
+        Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+        return true;
+    }
+
+    @Override
+    public Message take() throws InterruptedException {
+        Message m = poll();
+        if (m != null) {
+            return m;
+        }
+        waiter = Thread.currentThread();
+        try {
+            // Re-check after publishing the waiter: a producer that linked its node before
+            // seeing the waiter would not unpark us.
+            while ((m = poll()) == null) {
+                if (woken) {
+                    woken = false;
+                    return null;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.park(this);
+            }
+        } finally {
+            waiter = null;
+        }
+        return m;
+    }
+
+    @Override
+    public int drainTo(Collection<? super Message> sink, int max) throws InterruptedException {
+        Message first = take();
+        if (first == null) {
+            return 0;
+        }
+        sink.add(first);
+        int drained = 1;
+        Message m;
+        while (drained < max && (m = poll()) != null) {
+            sink.add(m);
+            drained++;
+        }
+        return drained;
+    }
+
+    @Override
+    public int poll(Collection<? super Message> sink, int max) {
+        int drained = 0;
+        Message m;
+        while (drained < max && (m = poll()) != null) {
+            sink.add(m);
+            drained++;
+        }
+        return drained;
+    }
+
+    @Override
+    public void wake() {
+        woken = true; // Nothing is enqueued, so waking allocates nothing
+        Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public void close() {
+        // Nothing but nodes on the heap, reclaimed with the mailbox
+    }
+
+    private Message poll() {
+        Node next = head.next;
+        if (next == null) {
+            return null;
+        }
+        Message m = next.value;
+        next.value = null; // The node becomes the new stub, don't keep the message reachable
+        head = next;
+        size.decrementAndGet();
+        return m;
+    }
+}
@@ -0,0 +1,37 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the sends that found a limited mailbox full, by what happened to
+ * them. The counters are live and may be read at any time.
+ */
+public final class OverflowCounters {
+
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+
+    OverflowCounters() {
+    }
+
+    /** @return the number of sends that had to wait for room. */
+    public long getBlocked() {return blocked.sum();}
+    /** @return the number of broadcasts dropped, evicted or incoming. */
+    public long getDropped() {return dropped.sum();}
+    /** @return the number of messages rejected; rejected events have failed Futures. */
+    public long getRejected() {return rejected.sum();}
+    /** @return the number of messages written to the spill file. */
+    public long getSpilled() {return spilled.sum();}
+
+    void blocked() {blocked.increment();}
+    void dropped() {dropped.increment();}
+    void rejected() {rejected.increment();}
+    void spilled() {spilled.increment();}
+
+    @Override
+    public String toString() {
+        return "blocked=" + getBlocked() + ", dropped=" + getDropped() + ", rejected=" + getRejected() + ", spilled=" + getSpilled();
+    }
+}
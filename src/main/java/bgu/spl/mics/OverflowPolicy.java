@@ -0,0 +1,58 @@
+package bgu.spl.mics;
+
+/**
+ * What a mailbox limited with
+ * {@link MessageBusImpl#limitMailbox(MicroService, int, OverflowPolicy)} does
+ * with a message sent to it while it is full. Every overflow is counted in the
+ * mailbox's {@link OverflowCounters}.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The sender waits until the receiver takes a message. A service must not
+     * send to its own full mailbox under this policy, as it would wait forever.
+     */
+    BLOCK,
+
+    /**
+     * A broadcast evicts the oldest broadcast waiting in the mailbox, or is
+     * dropped itself if only events are waiting. Events are never dropped
+     * silently: they are rejected as with {@link #REJECT}.
+     */
+    DROP_OLDEST,
+
+    /**
+     * The message is not delivered. The {@link Future} of a rejected event is
+     * resolved as failed (see {@link Future#isFailed()}); a rejected broadcast
+     * is dropped.
+     */
+    REJECT,
+
+    /**
+     * The message is written to a temporary file and read back, in order, as
+     * the receiver drains its mailbox. Messages that are not
+     * {@link java.io.Serializable} cannot be spilled: they wait as with
+     * {@link #BLOCK} while nothing is spilled, and in memory behind the spilled
+     * messages otherwise.
+     * <p>
+     * A spilled message reaches the receiver as a deserialized copy, not as the
+     * object that was sent: changes the receiver makes to it are not seen by the
+     * sender, and the two compare by identity as different objects. A spilled
+     * event keeps its {@link Future}, so its result still reaches the sender,
+     * and the receiver completes it by passing the copy it was handed. Only use
+     * this policy for message types whose receivers rely on their values alone.
+     */
+    SPILL_TO_DISK;
+
+    /**
+     * @param name the name of a policy, in any case.
+     * @return the matching policy.
+     */
+    public static OverflowPolicy parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown overflow policy: " + name);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package bgu.spl.mics;
+
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A mailbox backed by a {@link BlockingQueue}; the base of
+ * {@link BlockingMailbox} and {@link BoundedMailbox}.
+ * <p>
+ * A blocked {@code take()} can only be woken by adding something to the queue,
+ * so {@link #wake()} adds a shared marker message, at most one at a time, which
+ * is never handed to the consumer.
+ */
+abstract class QueueMailbox implements Mailbox {
+
+    private static final Message WAKE = new Message() {
+    };
+
+    protected final BlockingQueue<Message> queue;
+    private final AtomicBoolean woken = new AtomicBoolean();
+
+    protected QueueMailbox(BlockingQueue<Message> queue) {
+        this.queue = queue;
+    }
+
+    @Override
+    public boolean offer(Message m) {
+        queue.offer(m);
+        return true;
+    }
+
+    @Override
+    public Message take() throws InterruptedException {
+        Message m = queue.take(); // Waits until a message is available
+        if (m == WAKE) {
+            woken.set(false);
+            return null;
+        }
+        return m;
+    }
+
+    @Override
+    public int drainTo(Collection<? super Message> sink, int max) throws InterruptedException {
+        Message first = take();
+        if (first == null) {
+            return 0;
+        }
+        sink.add(first);
+        return 1 + drained(sink, queue.drainTo(sink, max - 1)); // One lock acquisition for the rest of the batch
+    }
+
+    @Override
+    public int poll(Collection<? super Message> sink, int max) {
+        return drained(sink, queue.drainTo(sink, max));
+    }
+
+    @Override
+    public void wake() {
+        if (woken.compareAndSet(false, true) && !queue.offer(WAKE)) {
+            // A full bounded queue: the consumer is not blocked now, and looks at the clocks after
+            // draining it. Clear the flag, or no later wake() could add the marker once it is drained.
+            woken.set(false);
+        }
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        // Nothing but the queue on the heap, reclaimed with the mailbox
+    }
+
+    /**
+     * Takes the wake marker back out of {@code sink} if it was drained into it.
+     */
+    private int drained(Collection<? super Message> sink, int count) {
+        if (woken.get() && sink.remove(WAKE)) {
+            woken.set(false);
+            return count - 1;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,103 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How the {@link MessageBusImpl} picks which subscriber of an {@link Event}
+ * type receives the next event of that type. The policy is set per event type
+ * with {@link MessageBusImpl#setRoutingPolicy(Class, RoutingPolicy)}.
+ */
+public enum RoutingPolicy {
+
+    /**
+     * Subscribers take turns. This is the default.
+     */
+    ROUND_ROBIN {
+        @Override
+        int select(Mailbox[] mailboxes, AtomicInteger cursor, Event<?> e) {
+            return turn(cursor) % mailboxes.length;
+        }
+    },
+
+    /**
+     * The subscriber with the fewest queued messages. Scans every subscriber,
+     * starting from a rotating position so that ties are spread evenly.
+     */
+    LEAST_LOADED {
+        @Override
+        int select(Mailbox[] mailboxes, AtomicInteger cursor, Event<?> e) {
+            int n = mailboxes.length;
+            int start = turn(cursor) % n;
+            int best = start;
+            int bestDepth = mailboxes[start].size();
+            for (int i = 1; i < n && bestDepth > 0; i++) {
+                int candidate = (start + i) % n;
+                int depth = mailboxes[candidate].size();
+                if (depth < bestDepth) {
+                    best = candidate;
+                    bestDepth = depth;
+                }
+            }
+            return best;
+        }
+    },
+
+    /**
+     * The less loaded of two randomly chosen subscribers ("power of two choices"),
+     * which gets close to {@link #LEAST_LOADED} while reading only two queue sizes.
+     */
+    TWO_CHOICES {
+        @Override
+        int select(Mailbox[] mailboxes, AtomicInteger cursor, Event<?> e) {
+            int n = mailboxes.length;
+            if (n == 1) {
+                return 0;
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(n);
+            int second = (first + 1 + random.nextInt(n - 1)) % n; // Distinct from first
+            return mailboxes[second].size() < mailboxes[first].size() ? second : first;
+        }
+    },
+
+    /**
+     * Events with equal {@link KeyedEvent#getRoutingKey() routing keys} go to the
+     * same subscriber. Events that are not {@link KeyedEvent}s are routed round-robin.
+     */
+    STICKY {
+        @Override
+        int select(Mailbox[] mailboxes, AtomicInteger cursor, Event<?> e) {
+            if (!(e instanceof KeyedEvent)) {
+                return ROUND_ROBIN.select(mailboxes, cursor, e);
+            }
+            int h = ((KeyedEvent<?>) e).getRoutingKey().hashCode();
+            h ^= (h >>> 16); // Spread the high bits, as HashMap does
+            return (h & Integer.MAX_VALUE) % mailboxes.length;
+        }
+    };
+
+    /**
+     * @param mailboxes the mailboxes of the subscribers, never empty.
+     * @param cursor    the round-robin cursor of the event type.
+     * @param e         the event being sent.
+     * @return the index of the subscriber that receives {@code e}.
+     */
+    abstract int select(Mailbox[] mailboxes, AtomicInteger cursor, Event<?> e);
+
+    private static int turn(AtomicInteger cursor) {
+        return cursor.getAndIncrement() & Integer.MAX_VALUE; // Stays non-negative when the counter wraps around
+    }
+
+    /**
+     * @param name the name of a policy, in any case.
+     * @return the matching policy.
+     */
+    public static RoutingPolicy parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown routing policy: " + name);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package bgu.spl.mics;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A thread-safe table indexed by {@link MessageTypes} ids.
+ * Reads are a volatile array load and an index; writes are rare (on
+ * subscription) and are serialized. A write copies the array, growing it
+ * when needed, and publishes the copy, so a published array is never written
+ * to and readers always see fully constructed values.
+ */
+final class TypeTable<V> {
+
+    private volatile Object[] slots = new Object[16];
+
+    /**
+     * @param id a message type id.
+     * @return the value stored for {@code id}, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    V get(int id) {
+        Object[] s = slots;
+        return id < s.length ? (V) s[id] : null;
+    }
+
+    /**
+     * @param id      a message type id.
+     * @param factory creates the value if {@code id} has none yet.
+     * @return the value stored for {@code id}.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized V computeIfAbsent(int id, Supplier<? extends V> factory) {
+        Object[] s = slots;
+        if (id < s.length && s[id] != null) {
+            return (V) s[id];
+        }
+        V value = factory.get();
+        put(id, value);
+        return value;
+    }
+
+    /**
+     * @param id    a message type id.
+     * @param value the value to store for {@code id}, replacing any previous one.
+     */
+    synchronized void put(int id, V value) {
+        Object[] s = copyFor(id);
+        s[id] = value;
+        slots = s; // Volatile write publishes the copy, and the new element with it, to readers
+    }
+
+    /**
+     * Calls {@code action} with every stored value.
+     */
+    @SuppressWarnings("unchecked")
+    void forEach(Consumer<? super V> action) {
+        for (Object value : slots) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the slots, grown to hold {@code id} if needed; only called while holding the lock.
+     */
+    private Object[] copyFor(int id) {
+        Object[] s = slots;
+        return Arrays.copyOf(s, id < s.length ? s.length : Math.max(s.length * 2, id + 1));
+    }
+}
@@ -0,0 +1,227 @@
+package bgu.spl.mics.application;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import bgu.spl.mics.ActorScheduler;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.application.objects.StatisticalFolder;
+
+/**
+ * Runs every configuration found under a directory, each as an isolated {@link Simulation}
+ * with its own message-bus and map, at most {@code concurrency} of them at a time.
+ * <p>
+ * A configuration is any file named {@code configuration*.json}; data file paths in it are
+ * relative to its directory, as in a single run. The output of {@code configuration_x.json}
+ * is written next to it as {@code output_x.json} (so {@code configuration_file.json} still
+ * gives {@code output_file.json}), and a summary of all the runs is written to
+ * {@code batch_summary.json} in the batch directory.
+ */
+public class BatchRunner {
+
+    private final File directory;
+    private final List<File> configurations;
+    private final int concurrency;
+    private final String mode; // "platform", "virtual" or "pool", as accepted by GurionRockRunner
+
+    /**
+     * @param directory   the directory searched, recursively, for configuration files.
+     * @param mode        how the services of every run are run: {@code platform}, {@code virtual} or {@code pool}.
+     * @param concurrency the maximal number of runs taking place at the same time.
+     */
+    public BatchRunner(File directory, String mode, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1, got " + concurrency);
+        }
+        if (!mode.equalsIgnoreCase("pool")) {
+            ThreadMode.parse(mode); // Fails before any run starts
+        }
+        this.directory = directory;
+        this.mode = mode;
+        this.concurrency = concurrency;
+        this.configurations = new ArrayList<>();
+        findConfigurations(directory, configurations);
+    }
+
+    public List<File> getConfigurations() {return configurations;}
+
+    /**
+     * Runs every configuration and writes the summary.
+     *
+     * @return the number of runs that failed to complete (a run that ends with a
+     *         sensor crash still completes, and writes its output).
+     * @throws InterruptedException if interrupted while waiting for the runs.
+     * @throws IOException          if the summary cannot be written.
+     */
+    public int run() throws InterruptedException, IOException {
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        List<Map<String, Object>> results = new ArrayList<>();
+        try {
+            List<Callable<Map<String, Object>>> runs = new ArrayList<>();
+            for (File configuration : configurations) {
+                runs.add(() -> runOne(configuration));
+            }
+            for (Future<Map<String, Object>> result : executor.invokeAll(runs)) {
+                try {
+                    results.add(result.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("A run escaped its error handling", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Map<String, Object> summary = summarize(results, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        File summaryFile = new File(directory, "batch_summary.json");
+        try (Writer writer = new FileWriter(summaryFile)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(summary, writer);
+        }
+        System.out.println("Ran " + results.size() + " configurations, " + summary.get("failed") + " failed; summary in " + summaryFile);
+        return ((Number) summary.get("failed")).intValue();
+    }
+
+    /**
+     * Runs {@code configuration} on a bus of its own.
+     * @return the result entry of the run in the summary.
+     */
+    private Map<String, Object> runOne(File configuration) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        File outputFile = sibling(configuration, "output");
+        result.put("configuration", directory.toPath().relativize(configuration.toPath()).toString());
+        result.put("output", directory.toPath().relativize(outputFile.toPath()).toString());
+        long start = System.nanoTime();
+        try {
+            Simulation simulation = new Simulation(configuration.getPath(), new MessageBusImpl(), outputFile, sibling(configuration, "metrics"));
+            if (mode.equalsIgnoreCase("pool")) {
+                ActorScheduler scheduler = new ActorScheduler();
+                try {
+                    simulation.run(scheduler);
+                } finally {
+                    scheduler.shutdown();
+                }
+            } else {
+                simulation.run(ThreadMode.parse(mode));
+            }
+            StatisticalFolder statistics = simulation.getStatistics();
+            String error = readError(outputFile);
+            result.put("status", error == null ? "completed" : "crashed");
+            if (error != null) {
+                result.put("error", error);
+            }
+            result.put("systemRuntime", statistics.getSystemRuntime());
+            result.put("numDetectedObjects", statistics.getNumDetectedObjects());
+            result.put("numTrackedObjects", statistics.getNumTrackedObjects());
+            result.put("numLandmarks", statistics.getNumLandmarks());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Restore the interrupted status
+            result.put("status", "failed");
+            result.put("error", "Interrupted");
+        } catch (Exception e) {
+            result.put("status", "failed");
+            result.put("error", String.valueOf(e.getMessage()));
+        }
+        result.put("wallMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return result;
+    }
+
+    private static Map<String, Object> summarize(List<Map<String, Object>> results, long wallMillis) {
+        int completed = 0;
+        int crashed = 0;
+        int failed = 0;
+        long totalRuntime = 0;
+        int maxRuntime = 0;
+        long totalLandmarks = 0;
+        int minLandmarks = Integer.MAX_VALUE;
+        int maxLandmarks = 0;
+        for (Map<String, Object> result : results) {
+            Object status = result.get("status");
+            if ("failed".equals(status)) {
+                failed++;
+                continue;
+            }
+            if ("crashed".equals(status)) {
+                crashed++;
+            } else {
+                completed++;
+            }
+            int runtime = (Integer) result.get("systemRuntime");
+            int landmarks = (Integer) result.get("numLandmarks");
+            totalRuntime += runtime;
+            maxRuntime = Math.max(maxRuntime, runtime);
+            totalLandmarks += landmarks;
+            minLandmarks = Math.min(minLandmarks, landmarks);
+            maxLandmarks = Math.max(maxLandmarks, landmarks);
+        }
+        int finished = completed + crashed;
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("runs", results.size());
+        summary.put("completed", completed);
+        summary.put("crashed", crashed);
+        summary.put("failed", failed);
+        summary.put("wallMillis", wallMillis);
+        summary.put("totalSystemRuntime", totalRuntime);
+        summary.put("meanSystemRuntime", finished == 0 ? 0.0 : (double) totalRuntime / finished);
+        summary.put("maxSystemRuntime", maxRuntime);
+        summary.put("totalLandmarks", totalLandmarks);
+        summary.put("meanLandmarks", finished == 0 ? 0.0 : (double) totalLandmarks / finished);
+        summary.put("minLandmarks", finished == 0 ? 0 : minLandmarks);
+        summary.put("maxLandmarks", maxLandmarks);
+        summary.put("results", results);
+        return summary;
+    }
+
+    private static void findConfigurations(File directory, List<File> found) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IllegalArgumentException("Cannot list the configuration directory " + directory);
+        }
+        Arrays.sort(files); // Runs, and their summary entries, in a stable order
+        for (File file : files) {
+            if (file.isDirectory()) {
+                findConfigurations(file, found);
+            } else if (file.getName().startsWith("configuration") && file.getName().endsWith(".json")) {
+                found.add(file);
+            }
+        }
+    }
+
+    /**
+     * @return the file next to {@code configuration} named like it with {@code prefix}
+     *         in place of "configuration", e.g. output_file.json for configuration_file.json.
+     */
+    private static File sibling(File configuration, String prefix) {
+        return new File(configuration.getParentFile(), prefix + configuration.getName().substring("configuration".length()));
+    }
+
+    /**
+     * @return the error recorded in the output file of a run, or null if it ended normally.
+     */
+    private static String readError(File outputFile) throws IOException {
+        try (Reader reader = new FileReader(outputFile)) {
+            JsonObject output = JsonParser.parseReader(reader).getAsJsonObject();
+            JsonElement error = output.get("error");
+            return error == null || error.isJsonNull() ? null : error.getAsString();
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package bgu.spl.mics.application;
 
+import java.io.File;
+
+import bgu.spl.mics.ActorScheduler;
+
 /**
  * The main entry point for the GurionRock Pro Max Ultra Over 9000 simulation.
  * <p>
@@ -14,13 +18,55 @@ public class GurionRockRunner {
      * This method sets up the necessary components, parses configuration files,
      * initializes services, and starts the simulation.
      *
-     * @param args Command-line arguments. The first argument is expected to be the path to the configuration file.
+     * @param args Command-line arguments. The first argument is expected to be the path to the configuration file,
+     *             or to a directory whose configurations are all run by a {@link BatchRunner}.
+     *             The optional second argument is how the services are run: {@code platform} (the default) or
+     *             {@code virtual} for a thread per service, or {@code pool} to multiplex them over a shared
+     *             {@link ActorScheduler} with one thread per processor.
+     *             In batch mode, the optional third argument is the maximal number of runs taking place at the
+     *             same time, one per processor by default.
      */
     public static void main(String[] args) {
-        System.out.println("Hello World!");
+        if (args.length < 1) {
+            System.err.println("Usage: GurionRockRunner <configuration file> [platform|virtual|pool]");
+            System.err.println("       GurionRockRunner <configuration directory> [platform|virtual|pool] [concurrency]");
+            System.exit(1);
+        }
+        if (new File(args[0]).isDirectory()) {
+            runBatch(args);
+            return;
+        }
+        try {
+            Simulation simulation = new Simulation(args[0]);
+            if (args.length > 1 && args[1].equalsIgnoreCase("pool")) {
+                ActorScheduler scheduler = new ActorScheduler();
+                try {
+                    simulation.run(scheduler);
+                } finally {
+                    scheduler.shutdown();
+                }
+            } else {
+                simulation.run(args.length > 1 ? ThreadMode.parse(args[1]) : ThreadMode.PLATFORM);
+            }
+        } catch (Exception e) {
+            System.err.println("Simulation failed: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
 
-        // TODO: Parse configuration file.
-        // TODO: Initialize system components and services.
-        // TODO: Start the simulation.
+    private static void runBatch(String[] args) {
+        try {
+            String mode = args.length > 1 ? args[1] : "platform";
+            int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            int failed = new BatchRunner(new File(args[0]), mode, concurrency).run();
+            if (failed > 0) {
+                System.exit(1);
+            }
+        } catch (Exception e) {
+            System.err.println("Batch failed: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
     }
 }
@@ -0,0 +1,50 @@
+package bgu.spl.mics.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import bgu.spl.mics.application.objects.JsonRecordStream;
+import bgu.spl.mics.application.objects.MappedLiDarData;
+import bgu.spl.mics.application.objects.StampedCloudPoints;
+
+/**
+ * Converts a LiDAR data file from JSON to the binary format of {@link MappedLiDarData}.
+ * A configuration whose {@code lidars_data_path} names the binary file has it memory-mapped
+ * instead of parsed, which makes loading a long recording nearly free.
+ */
+public class LiDarDataConverter {
+
+    /**
+     * @param args the JSON data file to read, and the binary file to write.
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: LiDarDataConverter <lidar data JSON file> <binary file to write>");
+            System.exit(1);
+        }
+        try {
+            int measurements = convert(new File(args[0]), new File(args[1]));
+            System.out.println("Converted " + measurements + " measurements to " + args[1]);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Conversion failed: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @param json   a LiDAR data file in the JSON layout, its measurements in any order.
+     * @param binary the binary file to write, replaced if it exists.
+     * @return the number of measurements converted.
+     * @throws IOException if a file cannot be read or written.
+     */
+    public static int convert(File json, File binary) throws IOException {
+        List<StampedCloudPoints> measurements;
+        try (JsonRecordStream<StampedCloudPoints> stream = JsonRecordStream.open(json, null, StampedCloudPoints.class, StampedCloudPoints::getTime)) {
+            measurements = stream.readThrough(Integer.MAX_VALUE); // Every record, whatever its order
+        }
+        MappedLiDarData.write(measurements, binary);
+        return measurements.size();
+    }
+}
@@ -0,0 +1,428 @@
+package bgu.spl.mics.application;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+
+import bgu.spl.mics.ActorScheduler;
+import bgu.spl.mics.BusMetrics;
+import bgu.spl.mics.Event;
+import bgu.spl.mics.Lane;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MicroService;
+import bgu.spl.mics.OverflowCounters;
+import bgu.spl.mics.OverflowPolicy;
+import bgu.spl.mics.RoutingPolicy;
+import bgu.spl.mics.application.messages.CrashedBroadcast;
+import bgu.spl.mics.application.messages.DetectObjectsEvent;
+import bgu.spl.mics.application.messages.FusionShardEvent;
+import bgu.spl.mics.application.messages.PoseEvent;
+import bgu.spl.mics.application.messages.TrackedObjectsEvent;
+import bgu.spl.mics.application.objects.Camera;
+import bgu.spl.mics.application.objects.FusionSlam;
+import bgu.spl.mics.application.objects.GPSIMU;
+import bgu.spl.mics.application.objects.JsonRecordStream;
+import bgu.spl.mics.application.objects.LiDarDataBase;
+import bgu.spl.mics.application.objects.LiDarWorkerTracker;
+import bgu.spl.mics.application.objects.MappedLiDarData;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.objects.STATUS;
+import bgu.spl.mics.application.objects.StampedCloudPoints;
+import bgu.spl.mics.application.objects.StampedDetectedObjects;
+import bgu.spl.mics.application.objects.StatisticalFolder;
+import bgu.spl.mics.application.services.CameraService;
+import bgu.spl.mics.application.services.FusionShardService;
+import bgu.spl.mics.application.services.FusionSlamService;
+import bgu.spl.mics.application.services.LiDarWorkerService;
+import bgu.spl.mics.application.services.PoseService;
+import bgu.spl.mics.application.services.TimeService;
+
+/**
+ * A single run of the GurionRock system: the objects and micro-services built
+ * from one configuration file, and the threads running them.
+ */
+public class Simulation {
+
+    private static final Gson GSON = new Gson();
+    private static final int POSE_RETENTION_SLACK = 64; // Ticks of poses kept beyond the sensors' delays, see poseRetention
+
+    private final List<MicroService> sensors = new ArrayList<>(); // Every service except the TimeService
+    private final TimeService timeService;
+    private final StatisticalFolder statistics;
+    private final Map<Class<? extends Event<?>>, RoutingPolicy> routing = new LinkedHashMap<>(); // Event types with a configured policy
+    private final JsonObject mailboxLimits; // Service names with a limited mailbox, null if none
+    private final Map<String, OverflowCounters> overflows = new LinkedHashMap<>();
+    private final File metricsFile; // Written after the run if the bus records metrics
+    private final MessageBusImpl bus; // The bus every service of the run registers on
+    private final int fusionShards; // The number of FusionShardServices building the map; 1 if Fusion-SLAM builds it alone
+    private final List<JsonRecordStream<?>> streams = new ArrayList<>(); // Data files read as the run goes, if streaming
+
+    /**
+     * Parses the configuration file and the data files it refers to, and builds the services.
+     * Data file paths in the configuration are relative to the configuration file's directory,
+     * and the output is written to {@code output_file.json} in that directory.
+     *
+     * @param configPath the path to the configuration file.
+     * @throws IOException if one of the files cannot be read.
+     */
+    public Simulation(String configPath) throws IOException {
+        this(configPath, MessageBusImpl.getInstance(), FusionSlam.getInstance(), LiDarDataBase::getInstance,
+                inConfigDirectory(configPath, "output_file.json"), inConfigDirectory(configPath, "metrics_file.json"));
+    }
+
+    /**
+     * Same as {@link #Simulation(String)}, but isolated from every other run in the process: the services
+     * register on {@code bus}, and the run builds its own {@link FusionSlam} and {@link LiDarDataBase}
+     * rather than using the singletons, so that several runs can take place at the same time.
+     *
+     * @param configPath  the path to the configuration file.
+     * @param bus         the bus the services of this run register on.
+     * @param outputFile  the file the output of the run is written to.
+     * @param metricsFile the file the bus metrics are written to, if enabled.
+     * @throws IOException if one of the files cannot be read.
+     */
+    public Simulation(String configPath, MessageBusImpl bus, File outputFile, File metricsFile) throws IOException {
+        this(configPath, bus, new FusionSlam(), LiDarDataBase::fromFile, outputFile, metricsFile);
+    }
+
+    private Simulation(String configPath, MessageBusImpl bus, FusionSlam fusionSlam, Function<String, LiDarDataBase> lidarData,
+                       File outputFile, File metricsFile) throws IOException {
+        this.bus = bus;
+        this.metricsFile = metricsFile;
+        File configFile = new File(configPath);
+        File baseDir = configFile.getAbsoluteFile().getParentFile();
+        JsonObject config = readJson(configFile).getAsJsonObject();
+
+        statistics = new StatisticalFolder();
+
+        // Optional, "StreamData": true reads the data files as the run goes, holding only a window of each in memory;
+        // the records of every file must then be in time order, and the LiDAR database is never the shared one.
+        // A binary LiDAR data file is memory-mapped either way.
+        boolean streaming = config.has("StreamData") && config.get("StreamData").getAsBoolean();
+        List<Camera> cameras = new ArrayList<>();
+        List<LiDarWorkerTracker> workers = new ArrayList<>();
+        GPSIMU gpsimu = new GPSIMU(0, STATUS.UP);
+        LiDarDataBase database;
+        try {
+            for (JsonElement element : cameraConfigurations(config)) {
+                JsonObject cameraConfig = element.getAsJsonObject();
+                Camera camera = new Camera(cameraConfig.get("id").getAsInt(), cameraConfig.get("frequency").getAsInt(), STATUS.UP);
+                String dataPath = cameraConfig.has("camera_datas_path")
+                        ? cameraConfig.get("camera_datas_path").getAsString()
+                        : config.getAsJsonObject("Cameras").get("camera_datas_path").getAsString();
+                String key = cameraConfig.has("camera_key") ? cameraConfig.get("camera_key").getAsString() : null;
+                if (streaming) {
+                    camera.streamFrom(openStream(new File(baseDir, dataPath), key, StampedDetectedObjects.class, StampedDetectedObjects::getTime));
+                } else {
+                    camera.getDetectedObjectsList().addAll(readCameraData(new File(baseDir, dataPath), key));
+                }
+                cameras.add(camera);
+            }
+
+            JsonObject lidars = config.getAsJsonObject("Lidars");
+            File lidarFile = new File(baseDir, lidars.get("lidars_data_path").getAsString());
+            if (streaming && !MappedLiDarData.isBinary(lidarFile)) {
+                // A measurement is dropped once no camera can still send the detections it belongs to
+                database = LiDarDataBase.streaming(openStream(lidarFile, null, StampedCloudPoints.class, StampedCloudPoints::getTime), () -> {
+                    int watermark = Integer.MAX_VALUE;
+                    for (Camera camera : cameras) {
+                        watermark = Math.min(watermark, camera.getTrackingWatermark());
+                    }
+                    return watermark;
+                });
+            } else {
+                database = lidarData.apply(lidarFile.getPath());
+            }
+            for (JsonElement element : lidars.getAsJsonArray("LidarConfigurations")) {
+                if (element.isJsonNull()) {
+                    continue; // Tolerates a trailing comma in the array
+                }
+                JsonObject workerConfig = element.getAsJsonObject();
+                workers.add(new LiDarWorkerTracker(workerConfig.get("id").getAsInt(), workerConfig.get("frequency").getAsInt(), STATUS.UP));
+            }
+
+            File poseFile = new File(baseDir, config.get("poseJsonFile").getAsString());
+            if (streaming) {
+                gpsimu.streamFrom(openStream(poseFile, null, Pose.class, Pose::getTime));
+            } else {
+                Type poseListType = new TypeToken<List<Pose>>(){}.getType();
+                List<Pose> poses = GSON.fromJson(readJson(poseFile), poseListType);
+                gpsimu.addPoses(poses);
+            }
+        } catch (IOException | RuntimeException e) {
+            closeStreams();
+            throw e;
+        }
+
+
+        // Optional, "FusionShards": N splits the map by landmark id into N shards, each built by a FusionShardService
+        // of its own; Fusion-SLAM merges them at the end into the map it would have built alone
+        fusionShards = config.has("FusionShards") ? config.get("FusionShards").getAsInt() : 1;
+        if (fusionShards < 1) {
+            throw new IllegalArgumentException("FusionShards must be positive, got " + fusionShards);
+        }
+
+        // Every service counts down once it has subscribed; the TimeService waits for all of them
+        int shardServices = fusionShards > 1 ? fusionShards : 0;
+        CountDownLatch ready = new CountDownLatch(cameras.size() + workers.size() + 2 + shardServices);
+        for (Camera camera : cameras) {
+            sensors.add(new CameraService(camera, statistics, ready, bus));
+        }
+        for (LiDarWorkerTracker worker : workers) {
+            sensors.add(new LiDarWorkerService(worker, database, cameras.size(), statistics, ready, bus));
+        }
+        sensors.add(new PoseService(gpsimu, ready, bus));
+        int sensorCount = sensors.size();
+        // Optional, "BoundedPoseHistory": true keeps only the poses a tracked object may still need rather than all of them;
+        // the output of a crash then lists only those poses
+        boolean boundedPoses = config.has("BoundedPoseHistory") && config.get("BoundedPoseHistory").getAsBoolean();
+        if (boundedPoses) {
+            fusionSlam.retainPoses(poseRetention(cameras, workers));
+        }
+        for (int shard = 0; shard < shardServices; shard++) {
+            FusionSlam shardSlam = new FusionSlam();
+            if (boundedPoses) {
+                shardSlam.retainPoses(poseRetention(cameras, workers));
+            }
+            sensors.add(new FusionShardService("FusionShard" + shard, shardSlam, statistics, ready, bus));
+        }
+        sensors.add(new FusionSlamService(fusionSlam, statistics, sensorCount, outputFile.getPath(), ready, fusionShards, bus));
+
+        // Optional, e.g. "EventRouting": {"DetectObjectsEvent": "least_loaded"}; unlisted event types are routed round-robin
+        if (config.has("EventRouting")) {
+            for (Map.Entry<String, JsonElement> entry : config.getAsJsonObject("EventRouting").entrySet()) {
+                routing.put(eventType(entry.getKey()), RoutingPolicy.parse(entry.getValue().getAsString()));
+            }
+        }
+
+        // Optional, e.g. "MailboxLimits": {"FusionSlam": {"capacity": 1000, "overflow": "block"}}; unlisted services are unbounded
+        mailboxLimits = config.has("MailboxLimits") ? config.getAsJsonObject("MailboxLimits") : null;
+
+        long tickMillis = TimeUnit.SECONDS.toMillis(config.get("TickTime").getAsLong());
+        timeService = new TimeService(tickMillis, config.get("Duration").getAsInt(), statistics, ready, bus);
+    }
+
+    public StatisticalFolder getStatistics() {return statistics;}
+
+    /**
+     * Starts every service on its own thread of the given kind and waits for all of them to terminate.
+     *
+     * @param mode the kind of threads to run the services on.
+     * @throws InterruptedException if interrupted while waiting for the services.
+     */
+    public void run(ThreadMode mode) throws InterruptedException {
+        applyRouting();
+        limitMailboxes();
+        List<Thread> threads = new ArrayList<>();
+        for (MicroService service : sensors) {
+            threads.add(mode.newThread(service, service.getName()));
+        }
+        threads.add(mode.newThread(timeService, timeService.getName()));
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            closeStreams(); // A stream is closed at its end, but a crash ends the run before that
+        }
+        reportRouting();
+        reportOverflows();
+        writeMetrics();
+    }
+
+    /**
+     * Runs the sensor and fusion services as actors on {@code scheduler} and waits for all of them to terminate.
+     * The TimeService sleeps between ticks, so it keeps a platform thread of its own rather than holding a pool thread.
+     *
+     * @param scheduler the scheduler to run the services on.
+     * @throws InterruptedException if interrupted while waiting for the services.
+     */
+    public void run(ActorScheduler scheduler) throws InterruptedException {
+        applyRouting();
+        limitMailboxes();
+        Thread timeThread = ThreadMode.PLATFORM.newThread(timeService, timeService.getName());
+        for (MicroService service : sensors) {
+            scheduler.start(service);
+        }
+        timeThread.start();
+        try {
+            scheduler.awaitTermination();
+            timeThread.join();
+        } finally {
+            closeStreams();
+        }
+        reportRouting();
+        reportOverflows();
+        writeMetrics();
+    }
+
+    private void applyRouting() {
+        // A crash reaches every service ahead of its queued events, so shutdown does not wait for the backlog;
+        // TerminatedBroadcast picks its lane itself, as a sensor's termination must stay behind its data
+        bus.setLane(CrashedBroadcast.class, Lane.CONTROL);
+        for (Map.Entry<Class<? extends Event<?>>, RoutingPolicy> entry : routing.entrySet()) {
+            bus.setRoutingPolicy(entry.getKey(), entry.getValue());
+        }
+        if (fusionShards > 1) {
+            // Every part of a shard must reach the same FusionShardService
+            bus.setRoutingPolicy(FusionShardEvent.class, RoutingPolicy.STICKY);
+        }
+    }
+
+    /**
+     * Prints the queue depth distribution of every event type with a configured routing policy.
+     */
+    private void reportRouting() {
+        for (Map.Entry<Class<? extends Event<?>>, RoutingPolicy> entry : routing.entrySet()) {
+            long[] histogram = bus.getQueueDepthHistogram(entry.getKey());
+            System.out.println(entry.getKey().getSimpleName() + " routed " + entry.getValue()
+                    + ", queue depth histogram (0, 1, 2-3, 4-7, ...): " + Arrays.toString(histogram));
+        }
+    }
+
+    /**
+     * Limits the mailboxes of the services listed in the configuration; must run before the services register.
+     */
+    private void limitMailboxes() {
+        if (mailboxLimits == null) {
+            return;
+        }
+        List<MicroService> services = new ArrayList<>(sensors);
+        services.add(timeService);
+        for (MicroService service : services) {
+            JsonObject limit = mailboxLimits.getAsJsonObject(service.getName());
+            if (limit != null) {
+                OverflowPolicy policy = limit.has("overflow") ? OverflowPolicy.parse(limit.get("overflow").getAsString()) : OverflowPolicy.BLOCK;
+                overflows.put(service.getName(), bus.limitMailbox(service, limit.get("capacity").getAsInt(), policy));
+            }
+        }
+    }
+
+    private void reportOverflows() {
+        for (Map.Entry<String, OverflowCounters> entry : overflows.entrySet()) {
+            System.out.println(entry.getKey() + " mailbox overflows: " + entry.getValue());
+        }
+    }
+
+    /**
+     * Writes the bus metrics, if enabled with {@code -Dbgu.spl.mics.metrics=true}, next to the output file.
+     */
+    private void writeMetrics() {
+        BusMetrics metrics = bus.getMetrics();
+        if (metrics == null) {
+            return;
+        }
+        Map<String, Object> output = new LinkedHashMap<>();
+        output.put("uptimeMillis", metrics.getUptimeMillis());
+        output.put("messages", metrics.getMessageStats());
+        try (Writer writer = new FileWriter(metricsFile)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(output, writer);
+        } catch (IOException e) {
+            System.err.println("Cannot write metrics file " + metricsFile + ": " + e.getMessage());
+        }
+    }
+
+    private <T> JsonRecordStream<T> openStream(File file, String key, Class<T> type, ToIntFunction<T> timeOf) throws IOException {
+        JsonRecordStream<T> stream = JsonRecordStream.open(file, key, type, timeOf);
+        streams.add(stream);
+        return stream;
+    }
+
+    private void closeStreams() {
+        for (JsonRecordStream<?> stream : streams) {
+            stream.close();
+        }
+    }
+
+    /**
+     * @return the number of ticks of poses Fusion-SLAM keeps: the pose of a tracked object is needed
+     *         up to a camera's and a LiDAR's delay after its tick, plus the time its events spend in
+     *         mailboxes, for which the window is doubled and {@link #POSE_RETENTION_SLACK} ticks added.
+     */
+    private static int poseRetention(List<Camera> cameras, List<LiDarWorkerTracker> workers) {
+        int cameraDelay = 0;
+        for (Camera camera : cameras) {
+            cameraDelay = Math.max(cameraDelay, camera.getFrequency());
+        }
+        int lidarDelay = 0;
+        for (LiDarWorkerTracker worker : workers) {
+            lidarDelay = Math.max(lidarDelay, worker.getFrequency());
+        }
+        return 2 * (cameraDelay + lidarDelay) + POSE_RETENTION_SLACK;
+    }
+
+    private static File inConfigDirectory(String configPath, String name) {
+        return new File(new File(configPath).getAbsoluteFile().getParentFile(), name);
+    }
+
+    private static Class<? extends Event<?>> eventType(String name) {
+        switch (name) {
+            case "DetectObjectsEvent":
+                return DetectObjectsEvent.class;
+            case "TrackedObjectsEvent":
+                return TrackedObjectsEvent.class;
+            case "PoseEvent":
+                return PoseEvent.class;
+            default:
+                throw new IllegalArgumentException("Unknown event type in EventRouting: " + name);
+        }
+    }
+
+    private static JsonArray cameraConfigurations(JsonObject config) {
+        JsonElement cameras = config.get("Cameras");
+        JsonArray configurations = cameras.isJsonArray()
+                ? cameras.getAsJsonArray()
+                : cameras.getAsJsonObject().getAsJsonArray("CamerasConfigurations");
+        JsonArray present = new JsonArray();
+        for (JsonElement element : configurations) {
+            if (!element.isJsonNull()) { // Tolerates a trailing comma in the array
+                present.add(element);
+            }
+        }
+        return present;
+    }
+
+    /**
+     * Reads a camera data file, which is either an array of stamped detections or
+     * an object mapping every camera key to such an array.
+     */
+    private static List<StampedDetectedObjects> readCameraData(File file, String key) throws IOException {
+        JsonElement data = readJson(file);
+        if (data.isJsonObject()) {
+            data = data.getAsJsonObject().get(key);
+        }
+        Type listType = new TypeToken<List<StampedDetectedObjects>>(){}.getType();
+        List<StampedDetectedObjects> detections = GSON.fromJson(data, listType);
+        return detections != null ? detections : new ArrayList<>();
+    }
+
+    private static JsonElement readJson(File file) throws IOException {
+        try (Reader reader = new FileReader(file)) {
+            return JsonParser.parseReader(reader);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package bgu.spl.mics.application;
+
+/**
+ * The kind of threads the simulation runs its micro-services on.
+ * Every micro-service blocks on its message queue between messages, so with
+ * hundreds of sensors {@link #VIRTUAL} threads keep the cost of a waiting
+ * service down to a small heap object instead of a whole platform thread.
+ */
+public enum ThreadMode {
+
+    /**
+     * One platform (operating system) thread per micro-service.
+     */
+    PLATFORM {
+        @Override
+        public Thread newThread(Runnable service, String name) {
+            return new Thread(service, name);
+        }
+    },
+
+    /**
+     * One virtual thread per micro-service, multiplexed by the JVM over a small set of carrier threads.
+     */
+    VIRTUAL {
+        @Override
+        public Thread newThread(Runnable service, String name) {
+            return Thread.ofVirtual().name(name).unstarted(service);
+        }
+    };
+
+    /**
+     * @param service the micro-service to run.
+     * @param name    the name of the thread.
+     * @return a new, unstarted thread that runs {@code service}.
+     */
+    public abstract Thread newThread(Runnable service, String name);
+
+    /**
+     * @param name "platform" or "virtual", in any case.
+     * @return the matching thread mode.
+     */
+    public static ThreadMode parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown thread mode: " + name + ", expecting platform or virtual");
+        }
+    }
+}
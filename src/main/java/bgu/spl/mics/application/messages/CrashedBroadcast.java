@@ -1,5 +1,8 @@
 package bgu.spl.mics.application.messages;
 
+import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.MicroService;
+
 /**
  * CrashedBroadcast
  * •
@@ -7,5 +10,18 @@ package bgu.spl.mics.application.messages;
  * •
  * Used for: notifying all other services that the sender service has crashed.
  */
-public class CrashedBroadcast {
+public class CrashedBroadcast implements Broadcast {
+    private final Class<? extends MicroService> senderType;
+    private final String senderName;
+    private final String error;
+
+    public CrashedBroadcast(Class<? extends MicroService> senderType, String senderName, String error) {
+        this.senderType = senderType;
+        this.senderName = senderName;
+        this.error = error;
+    }
+
+    public Class<? extends MicroService> getSenderType() {return senderType;}
+    public String getSenderName() {return senderName;}
+    public String getError() {return error;}
 }
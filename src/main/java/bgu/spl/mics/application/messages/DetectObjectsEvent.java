@@ -1,5 +1,10 @@
 package bgu.spl.mics.application.messages;
 
+import java.io.Serializable;
+
+import bgu.spl.mics.KeyedEvent;
+import bgu.spl.mics.application.objects.StampedDetectedObjects;
+
 /**
  * DetectObjectsEvent
  * •
@@ -14,5 +19,23 @@ package bgu.spl.mics.application.messages;
  * o
  * After the LiDar Worker completes the event, it saves the coordinates in the lastObjects variable in DataBase and sends True value to the Camera.
  */
-public class DetectObjectsEvent {
+public class DetectObjectsEvent implements KeyedEvent<Boolean>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int cameraId;
+    private final StampedDetectedObjects detectedObjects;
+
+    public DetectObjectsEvent(int cameraId, StampedDetectedObjects detectedObjects) {
+        this.cameraId = cameraId;
+        this.detectedObjects = detectedObjects;
+    }
+
+    public int getCameraId() {return cameraId;}
+    public StampedDetectedObjects getDetectedObjects() {return detectedObjects;}
+
+    /**
+     * Events of the same camera are routed to the same LiDAR worker under {@link bgu.spl.mics.RoutingPolicy#STICKY}.
+     */
+    @Override
+    public Object getRoutingKey() {return cameraId;}
 }
@@ -0,0 +1,49 @@
+package bgu.spl.mics.application.messages;
+
+import java.util.List;
+
+import bgu.spl.mics.KeyedEvent;
+import bgu.spl.mics.application.objects.TrackedObject;
+
+/**
+ * FusionShardEvent
+ * •
+ * Sent by: Fusion-SLAM, when the map is split into shards
+ * •
+ * Handled by: the fusion shard that owns the landmarks of the objects
+ * •
+ * Details:
+ * o
+ * The part of a TrackedObjectsEvent whose landmark ids hash to one shard, in the event's order.
+ * o
+ * Routed {@link bgu.spl.mics.RoutingPolicy#STICKY sticky} on the shard's index, so every part of
+ * a shard reaches the same fusion shard, in the order it was sent.
+ * o
+ * Every object carries the number of its arrival at Fusion-SLAM, and the event the sequence number
+ * of the message it was split from; the shards' maps are merged in that order.
+ */
+public class FusionShardEvent implements KeyedEvent<Boolean> {
+    private final int shard;
+    private final long sequence;
+    private final List<TrackedObject> trackedObjects;
+    private final long[] arrivals;
+
+    public FusionShardEvent(int shard, long sequence, List<TrackedObject> trackedObjects, long[] arrivals) {
+        this.shard = shard;
+        this.sequence = sequence;
+        this.trackedObjects = trackedObjects;
+        this.arrivals = arrivals;
+    }
+
+    public int getShard() {return shard;}
+    public long getSequence() {return sequence;}
+    public List<TrackedObject> getTrackedObjects() {return trackedObjects;}
+
+    /**
+     * @return the arrival number of every tracked object, in the same order.
+     */
+    public long[] getArrivals() {return arrivals;}
+
+    @Override
+    public Object getRoutingKey() {return shard;}
+}
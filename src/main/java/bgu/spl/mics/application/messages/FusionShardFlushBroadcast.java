@@ -0,0 +1,15 @@
+package bgu.spl.mics.application.messages;
+
+import bgu.spl.mics.Broadcast;
+
+/**
+ * FusionShardFlushBroadcast
+ * •
+ * Sent by: Fusion-SLAM, when the map is split into shards, once the run is over
+ * •
+ * Used for: asking every fusion shard for its part of the map. Queued behind everything
+ * Fusion-SLAM sent before it, so a shard answers only once it has processed all of it,
+ * with a FusionShardMapEvent, and then terminates.
+ */
+public class FusionShardFlushBroadcast implements Broadcast {
+}
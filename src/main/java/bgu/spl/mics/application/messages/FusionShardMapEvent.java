@@ -0,0 +1,37 @@
+package bgu.spl.mics.application.messages;
+
+import java.util.List;
+
+import bgu.spl.mics.Event;
+import bgu.spl.mics.application.objects.LandMark;
+
+/**
+ * FusionShardMapEvent
+ * •
+ * Sent by: a fusion shard, upon a FusionShardFlushBroadcast
+ * •
+ * Handled by: Fusion-SLAM
+ * •
+ * Details:
+ * o
+ * The landmarks of one shard, each with the key of the object that created it: the sequence
+ * number of the message whose processing created it, and the arrival number of the object.
+ * o
+ * Fusion-SLAM adds the landmarks of all the shards to its map by that key, which is the order
+ * a single Fusion-SLAM would have created them in.
+ */
+public class FusionShardMapEvent implements Event<Boolean> {
+    private final List<LandMark> landmarks;
+    private final long[] sequences;
+    private final long[] arrivals;
+
+    public FusionShardMapEvent(List<LandMark> landmarks, long[] sequences, long[] arrivals) {
+        this.landmarks = landmarks;
+        this.sequences = sequences;
+        this.arrivals = arrivals;
+    }
+
+    public List<LandMark> getLandmarks() {return landmarks;}
+    public long[] getSequences() {return sequences;}
+    public long[] getArrivals() {return arrivals;}
+}
@@ -0,0 +1,25 @@
+package bgu.spl.mics.application.messages;
+
+import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.application.objects.Pose;
+
+/**
+ * FusionShardPoseBroadcast
+ * •
+ * Sent by: Fusion-SLAM, when the map is split into shards, for every PoseEvent it receives
+ * •
+ * Used for: giving every fusion shard every pose, in the order Fusion-SLAM received them,
+ * between the parts of the TrackedObjectsEvents received before and after it.
+ */
+public class FusionShardPoseBroadcast implements Broadcast {
+    private final long sequence;
+    private final Pose pose;
+
+    public FusionShardPoseBroadcast(long sequence, Pose pose) {
+        this.sequence = sequence;
+        this.pose = pose;
+    }
+
+    public long getSequence() {return sequence;}
+    public Pose getPose() {return pose;}
+}
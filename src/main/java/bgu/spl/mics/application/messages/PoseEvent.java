@@ -1,5 +1,10 @@
 package bgu.spl.mics.application.messages;
 
+import java.io.Serializable;
+
+import bgu.spl.mics.Event;
+import bgu.spl.mics.application.objects.Pose;
+
 /**
  * PoseEvent
  * •
@@ -13,5 +18,14 @@ package bgu.spl.mics.application.messages;
  * o
  * Used by Fusion-SLAM for calculations based on received TrackedObjectEvents.
  */
-public class PoseEvent {
+public class PoseEvent implements Event<Boolean>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Pose pose;
+
+    public PoseEvent(Pose pose) {
+        this.pose = pose;
+    }
+
+    public Pose getPose() {return pose;}
 }
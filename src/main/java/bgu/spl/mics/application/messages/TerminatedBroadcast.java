@@ -1,11 +1,38 @@
 package bgu.spl.mics.application.messages;
 
+import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.Lane;
+import bgu.spl.mics.LanedMessage;
+import bgu.spl.mics.MicroService;
+
 /**
  * TerminatedBroadcast
  * •
  * Sent by all the sensors
  * •
  * Used for: notifying all other services that the service sending the broadcast will terminate.
+ * •
+ * A sensor's termination marks the end of the data it sent, so by default it is queued behind
+ * that data; a termination that stops its receivers is sent on {@link Lane#CONTROL} and overtakes it.
  */
-public class TerminatedBroadcast {
+public class TerminatedBroadcast implements Broadcast, LanedMessage {
+    private final Class<? extends MicroService> senderType;
+    private final String senderName;
+    private final Lane lane;
+
+    public TerminatedBroadcast(Class<? extends MicroService> senderType, String senderName) {
+        this(senderType, senderName, Lane.DATA);
+    }
+
+    public TerminatedBroadcast(Class<? extends MicroService> senderType, String senderName, Lane lane) {
+        this.senderType = senderType;
+        this.senderName = senderName;
+        this.lane = lane;
+    }
+
+    public Class<? extends MicroService> getSenderType() {return senderType;}
+    public String getSenderName() {return senderName;}
+
+    @Override
+    public Lane getLane() {return lane;}
 }
@@ -1,11 +1,22 @@
 package bgu.spl.mics.application.messages;
 
+import bgu.spl.mics.ClockBroadcast;
+
 /**
  * TickBroadcast
  * •
  * Sent by: TimeService
  * •
  * Used for: Timing message publications and processing.
+ * •
+ * Published once per tick on the message-bus clock channel rather than queued for every subscriber.
  */
-public class TickBroadcast {
+public class TickBroadcast implements ClockBroadcast {
+    private final int tick;
+
+    public TickBroadcast(int tick) {
+        this.tick = tick;
+    }
+
+    public int getTick() {return tick;}
 }
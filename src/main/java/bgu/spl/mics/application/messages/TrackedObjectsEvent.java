@@ -1,5 +1,12 @@
 package bgu.spl.mics.application.messages;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import bgu.spl.mics.Event;
+import bgu.spl.mics.application.objects.TrackedObject;
+
 /**
  * TrackedObjectsEvent
  * •
@@ -21,5 +28,14 @@ package bgu.spl.mics.application.messages;
  * •
  * If previously detected, updates measurements by averaging with previous data.
  */
-public class TrackedObjectsEvent {
+public class TrackedObjectsEvent implements Event<Boolean>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<TrackedObject> trackedObjects; // An ArrayList, so the event can be spilled to disk
+
+    public TrackedObjectsEvent(List<TrackedObject> trackedObjects) {
+        this.trackedObjects = trackedObjects instanceof ArrayList ? (ArrayList<TrackedObject>) trackedObjects : new ArrayList<>(trackedObjects);
+    }
+
+    public List<TrackedObject> getTrackedObjects() {return trackedObjects;}
 }
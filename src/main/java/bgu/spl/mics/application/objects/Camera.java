@@ -2,6 +2,8 @@ package bgu.spl.mics.application.objects;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -12,8 +14,12 @@ public class Camera {
    // --------------------- fields --------------------
    private final int Id;
    private final int frequency;
-   private final STATUS status;
+   private volatile STATUS status;
    private final List<StampedDetectedObjects> detectedObjectsList;
+   private final AtomicInteger lastAcknowledgedTime; // Updated from the LiDAR workers' threads
+   private JsonRecordStream<StampedDetectedObjects> stream; // Null while the whole recording is in detectedObjectsList
+   private final ConcurrentSkipListSet<Integer> untracked; // Detection times sent to the LiDAR workers and not handled yet
+   private volatile int lookedUpBefore; // The camera no longer looks up detections before this time
 
    // --------------------- constructor --------------------
     public Camera(int id, int frequency, STATUS status ){
@@ -21,6 +27,9 @@ public class Camera {
         this.frequency = frequency;
         this.status = status;
         this.detectedObjectsList = new ArrayList<>();
+        this.lastAcknowledgedTime = new AtomicInteger();
+        this.untracked = new ConcurrentSkipListSet<>();
+        this.lookedUpBefore = Integer.MIN_VALUE;
     }
 
    // --------------------- methods --------------------
@@ -28,6 +37,104 @@ public class Camera {
    public int getFrequency() {return frequency;}
    public STATUS getStatus() {return status;}
    public List<StampedDetectedObjects> getDetectedObjectsList() {return detectedObjectsList;}
+   public void setStatus(STATUS status) {this.status = status;}
+   public int getLastAcknowledgedTime() {return lastAcknowledgedTime.get();}
+
+   /**
+    * Records that a LiDAR worker finished tracking the objects detected at {@code time}.
+    *
+    * @param time the detection time.
+    */
+   public void acknowledge(int time) {
+       lastAcknowledgedTime.accumulateAndGet(time, Math::max);
+   }
+
+   /**
+    * Reads the detections from {@code stream} as they are looked up, instead of from
+    * {@link #getDetectedObjectsList()}, which then holds only those not looked up yet.
+    *
+    * @param stream the camera's recording, in time order.
+    */
+   public void streamFrom(JsonRecordStream<StampedDetectedObjects> stream) {
+       this.stream = stream;
+   }
+
+   /**
+    * Looks up the objects detected at {@code time}; detection times are looked up in increasing order,
+    * so while streaming, the detections before {@code time} are dropped from memory.
+    *
+    * @param time the detection time.
+    * @return the objects detected at {@code time}, or null if nothing was detected then.
+    */
+   public StampedDetectedObjects getDetectedObjectsAt(int time) {
+       if (stream != null) {
+           detectedObjectsList.addAll(stream.readThrough(time));
+           detectedObjectsList.removeIf(stamped -> stamped.getTime() < time);
+       }
+       lookedUpBefore = Math.max(lookedUpBefore, time); // Not past time itself: it may still be sent
+       for (StampedDetectedObjects stamped : detectedObjectsList) {
+           if (stamped.getTime() == time) {
+               return stamped;
+           }
+       }
+       return null;
+   }
+
+   /**
+    * @param time the detection time.
+    * @return true if the camera has detections later than {@code time}.
+    */
+   public boolean hasDetectionsAfter(int time) {
+       if (stream != null && stream.hasNext()) {
+           return true;
+       }
+       for (StampedDetectedObjects stamped : detectedObjectsList) {
+           if (stamped.getTime() > time) {
+               return true;
+           }
+       }
+       return false;
+   }
+
+   /**
+    * @return the latest detection time in this camera's data, or 0 if it has none; while streaming,
+    *         only the detections not looked up yet are known.
+    */
+   public int getLastDetectionTime() {
+       int last = 0;
+       for (StampedDetectedObjects stamped : detectedObjectsList) {
+           last = Math.max(last, stamped.getTime());
+       }
+       return last;
+   }
+
+   /**
+    * Records that the objects detected at {@code time} were sent to the LiDAR workers,
+    * which need the LiDAR measurements of {@code time} until {@link #tracked(int)}.
+    *
+    * @param time the detection time.
+    */
+   public void sent(int time) {
+       untracked.add(time);
+   }
+
+   /**
+    * Records that the objects detected at {@code time} were handled by a LiDAR worker, or will not be.
+    *
+    * @param time the detection time.
+    */
+   public void tracked(int time) {
+       untracked.remove(time);
+   }
+
+   /**
+    * @return the earliest time whose LiDAR measurements this camera's detections may still need.
+    */
+   public int getTrackingWatermark() {
+       int watermark = lookedUpBefore; // Read first: a time is added to untracked before the camera moves past it
+       Integer earliest = untracked.ceiling(Integer.MIN_VALUE);
+       return earliest == null ? watermark : Math.min(watermark, earliest);
+   }
 }
 
 
@@ -1,12 +1,16 @@
 package bgu.spl.mics.application.objects;
 
+import java.io.Serializable;
+
 /**
  * CloudPoint represents a specific point in a 3D space as detected by the LiDAR.
  * These points are used to generate a point cloud representing objects in the environment.
  */
-public class CloudPoint {
+public class CloudPoint implements Serializable {
 
 // --------------------- fields -------------------------
+    private static final long serialVersionUID = 1L;
+
     private final double x;
     private final double y;
 
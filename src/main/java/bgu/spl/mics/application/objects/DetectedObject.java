@@ -1,12 +1,19 @@
 package bgu.spl.mics.application.objects;
 
+import java.io.Serializable;
+
+import com.google.gson.annotations.SerializedName;
+
 /**
  * DetectedObject represents an object detected by the camera.
  * It contains information such as the object's ID and description.
  */
-public class DetectedObject {
+public class DetectedObject implements Serializable {
 
 // --------------------- fields -------------------------
+    private static final long serialVersionUID = 1L;
+
+    @SerializedName("id")
     private final String Id;
     private final String description;
 
@@ -1,12 +1,16 @@
 package bgu.spl.mics.application.objects;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Manages the fusion of sensor data for simultaneous localization and mapping (SLAM).
  * Combines data from multiple sensors (e.g., LiDAR, camera) to build and update a global map.
  * Implements the Singleton pattern to ensure a single instance of FusionSlam exists.
+ * Landmarks are indexed by id and by position, so mapping costs stay flat as the map grows.
  */
 public class FusionSlam {
     // Singleton instance holder
@@ -15,13 +19,20 @@ public class FusionSlam {
     }
 
 // --------------------- fields -------------------------
-    private final List<LandMark> landmarks;
-    private final List<Pose> poses;
+    private static final double GRID_CELL_SIZE = 5.0; // In meters; a few landmarks per cell on a typical map
+
+    private final List<LandMark> landmarks; // In the order they were added, as in the output file
+    private final Map<String, LandMark> landmarksById;
+    private final LandmarkGrid grid;
+    private PoseHistory poses;
+    private double[] buffer = new double[64]; // The points processAll transforms, reused from call to call
 
 // --------------------- constructor --------------------
     public FusionSlam(){
         this.landmarks = new ArrayList<>();
-        this.poses = new ArrayList<>();
+        this.landmarksById = new HashMap<>();
+        this.grid = new LandmarkGrid(GRID_CELL_SIZE);
+        this.poses = new PoseHistory();
     }
 
 // --------------------- methods --------------------
@@ -31,12 +42,136 @@ public class FusionSlam {
 
     public void addLandmark (LandMark landmark){
         this.landmarks.add(landmark);
+        this.landmarksById.putIfAbsent(landmark.getId(), landmark); // As a scan of the list would, the first one is found
+        this.grid.add(landmark);
     }
 
     public void addPose( Pose pose){
         this.poses.add(pose);
     }
 
-    public List<LandMark> getLandMarkList() { return landmarks;}
-    public List<Pose> getPoseList() {return poses;}
+    /**
+     * Keeps only the poses of the last {@code ticks} ticks from now on, so that memory stays
+     * constant however long the run; the poses received so far are dropped.
+     *
+     * @param ticks the number of ticks, up to the latest pose, whose poses are kept; 0 to keep every pose.
+     */
+    public void retainPoses(int ticks) {
+        this.poses = new PoseHistory(ticks);
+    }
+
+    /**
+     * @return the landmarks, in the order they were added; read-only, as they are indexed.
+     */
+    public List<LandMark> getLandMarkList() { return Collections.unmodifiableList(landmarks);}
+
+    /**
+     * @return the poses received, by time; only the retained ones if {@link #retainPoses(int)} was called.
+     */
+    public List<Pose> getPoseList() {return poses.toList();}
+
+    /**
+     * @param time the tick to look up.
+     * @return the robot's pose at {@code time}; if none was received for it but poses of earlier
+     *         and later ticks were, the pose interpolated between them; otherwise null.
+     */
+    public Pose getPose(int time) {
+        return poses.interpolate(time);
+    }
+
+    /**
+     * @param id the landmark id.
+     * @return the landmark with id {@code id}, or null if it is not on the map.
+     */
+    public LandMark getLandmark(String id) {
+        return landmarksById.get(id);
+    }
+
+    /**
+     * @param x      the x coordinate, in the charging station's coordinate system.
+     * @param y      the y coordinate, in the charging station's coordinate system.
+     * @param radius the maximal distance.
+     * @return the landmarks whose centroid (the mean of their points) is within {@code radius}
+     *         of (x, y), nearest first.
+     */
+    public List<LandMark> getLandmarksWithin(double x, double y, double radius) {
+        return grid.within(x, y, radius);
+    }
+
+    /**
+     * @param x the x coordinate, in the charging station's coordinate system.
+     * @param y the y coordinate, in the charging station's coordinate system.
+     * @param k the number of landmarks to find.
+     * @return the {@code k} landmarks whose centroid (the mean of their points) is nearest to (x, y),
+     *         nearest first; all of them if there are fewer.
+     */
+    public List<LandMark> getNearestLandmarks(double x, double y, int k) {
+        return grid.nearest(x, y, k);
+    }
+
+    /**
+     * Removes every landmark and pose, as for a new run on the same instance.
+     */
+    public void clear() {
+        landmarks.clear();
+        landmarksById.clear();
+        grid.clear();
+        poses.clear();
+    }
+
+    /**
+     * Transforms the cloud points of {@code object} to the charging station's coordinate system
+     * using {@code pose}, and adds them to the map: as a new landmark if the object was not seen
+     * before, otherwise by averaging them into the existing landmark.
+     *
+     * @param object the tracked object.
+     * @param pose   the robot's pose at the time the object was tracked.
+     * @return true if a new landmark was added to the map.
+     */
+    public boolean process(TrackedObject object, Pose pose) {
+        return processAll(Collections.singletonList(object), pose) == 1;
+    }
+
+    /**
+     * Same as {@link #process(TrackedObject, Pose)} for each of {@code objects} in turn, all tracked
+     * at the time of {@code pose}. Their points are transformed together, in a buffer reused from
+     * call to call.
+     *
+     * @param objects the tracked objects.
+     * @param pose    the robot's pose at the time the objects were tracked.
+     * @return the number of new landmarks added to the map.
+     */
+    public int processAll(List<TrackedObject> objects, Pose pose) {
+        int length = 0;
+        for (TrackedObject object : objects) {
+            length += 2 * object.getCoordinates().size();
+        }
+        if (buffer.length < length) {
+            buffer = new double[Math.max(length, 2 * buffer.length)];
+        }
+        int offset = 0;
+        for (TrackedObject object : objects) {
+            object.getCoordinates().copyTo(buffer, offset);
+            offset += 2 * object.getCoordinates().size();
+        }
+        new PoseTransform(pose).apply(buffer, 0, length / 2);
+
+        int added = 0;
+        offset = 0;
+        for (TrackedObject object : objects) {
+            int count = object.getCoordinates().size();
+            LandMark landmark = getLandmark(object.getId());
+            if (landmark == null) {
+                landmark = new LandMark(object.getId(), object.getDescription());
+                landmark.update(buffer, offset, count);
+                addLandmark(landmark);
+                added++;
+            } else {
+                landmark.update(buffer, offset, count);
+                grid.moved(landmark);
+            }
+            offset += 2 * count;
+        }
+        return added;
+    }
 }
@@ -1,7 +1,6 @@
 package bgu.spl.mics.application.objects;
 
 import java.util.List;
-import java.util.ArrayList;
 
 
 /**
@@ -10,20 +9,69 @@ import java.util.ArrayList;
  */
 public class GPSIMU {
 // --------------------- fields --------------------
-    private final int currentTick;
-    private final STATUS status;
-    private final List<Pose> poseList;
+    private static final int STREAMED_RETENTION = 64; // Ticks of streamed poses kept; they are looked up in increasing order
+
+    private int currentTick;
+    private volatile STATUS status;
+    private PoseHistory poses;
+    private JsonRecordStream<Pose> stream; // Null while the whole recording is in poses
 
 // --------------------- constructor --------------------
     public GPSIMU(int currentTick, STATUS status){
         this.currentTick = currentTick;
         this.status = status;
-        this.poseList = new ArrayList<>();
+        this.poses = new PoseHistory();
     }
 
 // --------------------- methods --------------------
     public int getCurrenttick() {return currentTick;}
     public STATUS getStatus() {return status;}
-    public List<Pose> getPoseList() {return poseList;}
+    public void setCurrentTick(int currentTick) {this.currentTick = currentTick;}
+    public void setStatus(STATUS status) {this.status = status;}
+
+    /**
+     * Adds recorded poses; for a tick recorded more than once, the first pose is kept.
+     */
+    public void addPoses(List<Pose> recorded) {
+        poses.addAll(recorded);
+    }
+
+    /**
+     * Reads the poses from {@code stream} as they are looked up, keeping only the latest
+     * ones in memory, instead of from the poses added with {@link #addPoses(List)}.
+     *
+     * @param stream the recorded poses, in time order.
+     */
+    public void streamFrom(JsonRecordStream<Pose> stream) {
+        this.stream = stream;
+        this.poses = new PoseHistory(STREAMED_RETENTION);
+    }
+
+    /**
+     * Looks up the pose at {@code time}; while streaming, ticks are looked up in increasing order.
+     *
+     * @param time the tick to look up.
+     * @return the robot's pose at {@code time}, or null if there is none.
+     */
+    public Pose getPose(int time) {
+        if (stream != null) {
+            poses.addAll(stream.readThrough(time));
+        }
+        return poses.get(time);
+    }
+
+    /**
+     * @param time the tick.
+     * @return true if there are recorded poses later than {@code time}.
+     */
+    public boolean hasPosesAfter(int time) {
+        return (stream != null && stream.hasNext()) || poses.getLatestTime() > time;
+    }
+
+    /**
+     * @return the latest tick with a recorded pose, or 0 if there is none; while streaming,
+     *         only the poses read so far are known.
+     */
+    public int getLastPoseTime() {return Math.max(0, poses.getLatestTime());}
 
 }
@@ -0,0 +1,125 @@
+package bgu.spl.mics.application.objects;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Reads the records of a JSON array one at a time, so that a recording never has to be
+ * in memory as a whole. The records are expected in non-decreasing time order, as the
+ * sensors recorded them; the file is closed once its last record has been read.
+ *
+ * @param <T> the type of the records.
+ */
+public class JsonRecordStream<T> implements Closeable {
+// --------------------- fields -------------------------
+    private static final Gson GSON = new Gson();
+
+    private final File file;
+    private final JsonReader reader;
+    private final Type type;
+    private final ToIntFunction<T> timeOf;
+    private T next; // Read ahead: the first record not returned yet, null once the array has ended
+    private boolean closed;
+
+// --------------------- constructor --------------------
+    private JsonRecordStream(File file, JsonReader reader, Type type, ToIntFunction<T> timeOf) {
+        this.file = file;
+        this.reader = reader;
+        this.type = type;
+        this.timeOf = timeOf;
+    }
+
+// --------------------- methods ------------------------
+    /**
+     * Opens a file holding an array of records, or an object mapping keys to such arrays.
+     *
+     * @param file   the file to read.
+     * @param key    the key of the array to read if the file holds an object, ignored otherwise.
+     * @param type   the type of the records.
+     * @param timeOf the time of a record.
+     * @return a stream positioned before the first record.
+     * @throws IOException if the file cannot be read, or holds no such array.
+     */
+    public static <T> JsonRecordStream<T> open(File file, String key, Type type, ToIntFunction<T> timeOf) throws IOException {
+        JsonReader reader = new JsonReader(new BufferedReader(new FileReader(file)));
+        reader.setLenient(true); // As the whole-file parser the data files were read with
+        JsonRecordStream<T> stream = new JsonRecordStream<>(file, reader, type, timeOf);
+        try {
+            if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext() && !reader.nextName().equals(key)) {
+                    reader.skipValue(); // Skipped without building it, however large
+                }
+                if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                    throw new IOException("No array " + key + " in " + file);
+                }
+            }
+            reader.beginArray();
+            stream.readAhead();
+        } catch (IOException | RuntimeException e) {
+            stream.close();
+            throw e;
+        }
+        return stream;
+    }
+
+    /**
+     * @param time the latest time to read.
+     * @return the records up to {@code time} that were not returned yet, in the order of the file.
+     */
+    public synchronized List<T> readThrough(int time) {
+        List<T> records = new ArrayList<>();
+        while (next != null && timeOf.applyAsInt(next) <= time) {
+            records.add(next);
+            readAhead();
+        }
+        return records;
+    }
+
+    /**
+     * @return true if there are records that were not returned yet; after {@link #readThrough(int)}
+     *         they are all later than the time it was called with.
+     */
+    public synchronized boolean hasNext() {return next != null;}
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        next = null;
+        try {
+            reader.close();
+        } catch (IOException e) {
+            // Only read from, nothing is lost
+        }
+    }
+
+    private void readAhead() {
+        next = null;
+        try {
+            while (next == null && !closed && reader.hasNext()) {
+                next = GSON.fromJson(reader, type); // Null for a null element, e.g. after a trailing comma
+            }
+            if (next == null) {
+                close();
+            }
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Cannot read a record from " + file, e);
+        }
+    }
+}
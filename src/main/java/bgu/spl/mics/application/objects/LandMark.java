@@ -1,22 +1,87 @@
 package bgu.spl.mics.application.objects;
 
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+import com.google.gson.annotations.SerializedName;
+
 /**
  * Represents a landmark in the environment map.
  * Landmarks are identified and updated by the FusionSlam service.
  */
 public class LandMark {
 // --------------------- fields --------------------
+    @SerializedName("id")
     private final String Id;
     private final String description;
+    private PackedPoints coordinates; // A view of the first size points of xy; what the output file holds
+    private transient double[] xy; // x0, y0, x1, y1, ..., averaged in place, with room for more points
+    private transient int size;
 
 // --------------------- constructor --------------------
     public LandMark(String id, String description){
         this.Id = id;
         this.description = description;
+        this.coordinates = PackedPoints.EMPTY;
+        this.xy = new double[0];
     }
 
 // --------------------- methods --------------------
     public String getId() {return Id;}
     public String getDescription() {return description;}
 
+    /**
+     * @return the coordinates of this landmark; a view that follows later updates.
+     */
+    public PackedPoints getCoordinates() {return coordinates;}
+
+    /**
+     * Merges a new measurement of this landmark into its coordinates: every point is replaced by
+     * the average of its previous value and the matching new point, and extra new points are appended.
+     * The coordinates are updated in place; only appended points may need more room.
+     *
+     * @param points the new measurement, already in the charging station's coordinate system.
+     */
+    public void update(PackedPoints points) {
+        int common = Math.min(size, points.size());
+        for (int i = 0; i < common; i++) {
+            xy[2 * i] = (xy[2 * i] + points.getX(i)) / 2;
+            xy[2 * i + 1] = (xy[2 * i + 1] + points.getY(i)) / 2;
+        }
+        if (points.size() > size) {
+            int previous = size;
+            grow(points.size());
+            for (int i = previous; i < size; i++) {
+                xy[2 * i] = points.getX(i);
+                xy[2 * i + 1] = points.getY(i);
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #update(PackedPoints)}, with the new measurement given as {@code count} points
+     * packed in {@code points} from {@code offset} on; {@code points} is not kept.
+     */
+    public void update(double[] points, int offset, int count) {
+        int common = Math.min(size, count);
+        for (int i = 0; i < 2 * common; i++) {
+            xy[i] = (xy[i] + points[offset + i]) / 2;
+        }
+        if (count > size) {
+            int previous = size;
+            grow(count);
+            System.arraycopy(points, offset + 2 * previous, xy, 2 * previous, 2 * (count - previous));
+        }
+    }
+
+    /**
+     * Makes room for {@code count} points, and views them as the coordinates.
+     */
+    private void grow(int count) {
+        if (xy.length < 2 * count) {
+            xy = Arrays.copyOf(xy, Math.max(2 * count, 2 * xy.length));
+        }
+        size = count;
+        coordinates = new PackedPoints(DoubleBuffer.wrap(xy, 0, 2 * size).slice());
+    }
 }
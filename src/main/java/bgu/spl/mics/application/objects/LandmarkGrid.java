@@ -0,0 +1,207 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * A uniform grid over the landmarks of a map, for finding the landmarks near a position without
+ * going over all of them. A landmark is filed under the cell of its centroid, the mean of its
+ * points, and must be {@link #moved(LandMark) re-filed} whenever its points change.
+ */
+class LandmarkGrid {
+// --------------------- fields -------------------------
+    private final double cellSize;
+    private final Map<Long, List<Entry>> cells = new HashMap<>(); // Only non-empty cells
+    private final Map<LandMark, Entry> entries = new IdentityHashMap<>();
+
+// --------------------- constructor --------------------
+    /**
+     * @param cellSize the side of a cell, in the map's units; best around the radius typically queried.
+     */
+    LandmarkGrid(double cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("cellSize must be positive, got " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+
+// --------------------- methods ------------------------
+    void add(LandMark landmark) {
+        Entry entry = new Entry(landmark);
+        entries.put(landmark, entry);
+        file(entry);
+    }
+
+    /**
+     * Re-files {@code landmark} after its points changed.
+     */
+    void moved(LandMark landmark) {
+        Entry entry = entries.get(landmark);
+        if (entry == null) {
+            add(landmark);
+            return;
+        }
+        long previous = entry.cell;
+        entry.locate();
+        if (entry.cell != previous) {
+            List<Entry> cell = cells.get(previous);
+            cell.remove(entry);
+            if (cell.isEmpty()) {
+                cells.remove(previous);
+            }
+            file(entry);
+        }
+    }
+
+    void clear() {
+        cells.clear();
+        entries.clear();
+    }
+
+    /**
+     * @return the landmarks whose centroid is within {@code radius} of (x, y), nearest first.
+     */
+    List<LandMark> within(double x, double y, double radius) {
+        List<Entry> found = new ArrayList<>();
+        long low = cell(x - radius);
+        long high = cell(x + radius);
+        long bottom = cell(y - radius);
+        long top = cell(y + radius);
+        if ((double) (high - low + 1) * (top - bottom + 1) > cells.size()) {
+            // Fewer occupied cells than cells in range: cheaper to check them all
+            for (List<Entry> cell : cells.values()) {
+                addWithin(cell, x, y, radius, found);
+            }
+        } else {
+            for (long cx = low; cx <= high; cx++) {
+                for (long cy = bottom; cy <= top; cy++) {
+                    addWithin(cells.get(key(cx, cy)), x, y, radius, found);
+                }
+            }
+        }
+        return byDistance(found, x, y);
+    }
+
+    /**
+     * @return the (at most) {@code k} landmarks whose centroid is nearest to (x, y), nearest first.
+     */
+    List<LandMark> nearest(double x, double y, int k) {
+        // The k nearest seen so far, farthest on top
+        PriorityQueue<Entry> nearest = new PriorityQueue<>(
+                Comparator.comparingDouble((Entry entry) -> entry.squaredDistance(x, y)).reversed());
+        if (k > 0) {
+            long cx = cell(x);
+            long cy = cell(y);
+            for (long ring = 0; ; ring++) {
+                if ((double) (2 * ring + 1) * (2 * ring + 1) > cells.size()) {
+                    // The rings cover more cells than are occupied: finish by checking them all
+                    nearest.clear();
+                    for (List<Entry> cell : cells.values()) {
+                        addNearest(cell, x, y, k, nearest);
+                    }
+                    break;
+                }
+                for (long i = -ring; i <= ring; i++) { // The cells at Chebyshev distance ring from (cx, cy)
+                    addNearest(cells.get(key(cx + i, cy - ring)), x, y, k, nearest);
+                    if (ring > 0) {
+                        addNearest(cells.get(key(cx + i, cy + ring)), x, y, k, nearest);
+                    }
+                }
+                for (long i = -ring + 1; i <= ring - 1; i++) {
+                    addNearest(cells.get(key(cx - ring, cy + i)), x, y, k, nearest);
+                    addNearest(cells.get(key(cx + ring, cy + i)), x, y, k, nearest);
+                }
+                // Every centroid in the rings not searched yet is at least ring * cellSize away
+                if (nearest.size() == k && nearest.peek().squaredDistance(x, y) <= (ring * cellSize) * (ring * cellSize)) {
+                    break;
+                }
+            }
+        }
+        return byDistance(new ArrayList<>(nearest), x, y);
+    }
+
+    private void file(Entry entry) {
+        cells.computeIfAbsent(entry.cell, key -> new ArrayList<>(2)).add(entry);
+    }
+
+    private static void addWithin(List<Entry> cell, double x, double y, double radius, List<Entry> found) {
+        if (cell == null) {
+            return;
+        }
+        for (Entry entry : cell) {
+            if (entry.squaredDistance(x, y) <= radius * radius) {
+                found.add(entry);
+            }
+        }
+    }
+
+    private static void addNearest(List<Entry> cell, double x, double y, int k, PriorityQueue<Entry> nearest) {
+        if (cell == null) {
+            return;
+        }
+        for (Entry entry : cell) {
+            if (nearest.size() < k) {
+                nearest.add(entry);
+            } else if (entry.squaredDistance(x, y) < nearest.peek().squaredDistance(x, y)) {
+                nearest.poll();
+                nearest.add(entry);
+            }
+        }
+    }
+
+    private static List<LandMark> byDistance(List<Entry> found, double x, double y) {
+        found.sort(Comparator.comparingDouble(entry -> entry.squaredDistance(x, y)));
+        List<LandMark> landmarks = new ArrayList<>(found.size());
+        for (Entry entry : found) {
+            landmarks.add(entry.landmark);
+        }
+        return landmarks;
+    }
+
+    private long cell(double coordinate) {
+        return (long) Math.floor(coordinate / cellSize);
+    }
+
+    private static long key(long cx, long cy) {
+        return (cx << 32) ^ (cy & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A landmark with its centroid, as of the last time it was filed.
+     */
+    private final class Entry {
+        private final LandMark landmark;
+        private double x;
+        private double y;
+        private long cell;
+
+        Entry(LandMark landmark) {
+            this.landmark = landmark;
+            locate();
+        }
+
+        void locate() {
+            PackedPoints points = landmark.getCoordinates();
+            double sumX = 0;
+            double sumY = 0;
+            for (int i = 0; i < points.size(); i++) {
+                sumX += points.getX(i);
+                sumY += points.getY(i);
+            }
+            x = points.size() == 0 ? 0 : sumX / points.size();
+            y = points.size() == 0 ? 0 : sumY / points.size();
+            cell = key(cell(x), cell(y));
+        }
+
+        double squaredDistance(double x, double y) {
+            double dx = this.x - x;
+            double dy = this.y - y;
+            return dx * dx + dy * dy;
+        }
+    }
+}
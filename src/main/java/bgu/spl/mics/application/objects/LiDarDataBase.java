@@ -1,41 +1,219 @@
 package bgu.spl.mics.application.objects;
 
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntSupplier;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 
 /**
  * LiDarDataBase is a singleton class responsible for managing LiDAR data.
  * It provides access to cloud point data and other relevant information for tracked objects.
+ * Measurements are indexed by time and object id, so a lookup costs the same however long the recording is.
+ * A data file in the binary format of {@link MappedLiDarData} is memory-mapped instead of loaded.
+ * Loaded and mapped data are never modified once published, so lookups in them take no lock;
+ * only a streaming database, which reads ahead as it is looked up, locks.
  */
 public class LiDarDataBase {
 // --------------------- fields -------------------------
-    private List<StampedCloudPoints> cloudPoints;
+    private volatile Index index = new Index(); // Never modified once published, unless streaming
+    private volatile MappedLiDarData mapped; // Non-null when the data file is binary; index is then unused
+    private String loadedFrom; // Guarded by this
+    private final JsonRecordStream<StampedCloudPoints> stream; // Null unless streaming
+    private final IntSupplier watermark; // While streaming, the measurements before it are no longer looked up
+    private final Set<Integer> errorTimes = new HashSet<>(); // While streaming, kept after their records are dropped; guarded by this
 
 
     // Inner class that holds the single instance
     private static class LiDarDataBaseHolder {
-        private static LiDarDataBase instance = new LiDarDataBase();
+        private static LiDarDataBase instance = new LiDarDataBase(null, null);
     }
 // --------------------- constructor --------------------
 
     // Private constructor to prevent creation of additional instances
-    private LiDarDataBase(){
-        this.cloudPoints = new ArrayList<StampedCloudPoints>();
+    private LiDarDataBase(JsonRecordStream<StampedCloudPoints> stream, IntSupplier watermark){
+        this.stream = stream;
+        this.watermark = watermark;
     }
 // --------------------- methods ------------------------
 
     /**
      * Returns the singleton instance of LiDarDataBase.
+     * The data file is read the first time this method is called; later calls return the loaded instance.
      *
      * @param filePath The path to the LiDAR data file.
      * @return The singleton instance of LiDarDataBase.
      */
-    public static LiDarDataBase getInstance(String filePath) { // TO COMPLETE
-        // TODO: Implement this
+    public static LiDarDataBase getInstance(String filePath) {
+        LiDarDataBase instance = LiDarDataBaseHolder.instance;
+        instance.load(filePath);
+        return instance;
+    }
 
-        return LiDarDataBaseHolder.instance;
+    /**
+     * Returns a new LiDarDataBase holding the data of {@code filePath}, separate from the
+     * singleton instance, for runs that must not share their data with other runs.
+     *
+     * @param filePath The path to the LiDAR data file.
+     * @return A new, loaded LiDarDataBase.
+     */
+    public static LiDarDataBase fromFile(String filePath) {
+        LiDarDataBase database = new LiDarDataBase(null, null);
+        database.load(filePath);
+        return database;
     }
 
-// --------------------- fields -------------------------
+    /**
+     * Returns a new LiDarDataBase that reads the measurements from {@code stream} as they are looked up,
+     * and holds only those from {@code watermark} on in {@link #getCloudPoints()}.
+     *
+     * @param stream    The LiDAR measurements, in time order.
+     * @param watermark The earliest time that may still be looked up; it never decreases.
+     * @return A new, streaming LiDarDataBase.
+     */
+    public static LiDarDataBase streaming(JsonRecordStream<StampedCloudPoints> stream, IntSupplier watermark) {
+        return new LiDarDataBase(stream, watermark);
+    }
+
+    private synchronized void load(String filePath) {
+        if (loadedFrom != null) {
+            return;
+        }
+        try {
+            if (MappedLiDarData.isBinary(new File(filePath))) {
+                mapped = MappedLiDarData.open(new File(filePath));
+                loadedFrom = filePath;
+                return;
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot map LiDAR data file " + filePath, e);
+        }
+        try (Reader reader = new FileReader(filePath)) {
+            List<StampedCloudPoints> loaded = new Gson().fromJson(reader, new TypeToken<List<StampedCloudPoints>>(){}.getType());
+            Index built = new Index();
+            if (loaded != null) {
+                for (StampedCloudPoints points : loaded) {
+                    built.add(points);
+                }
+            }
+            index = built; // Volatile write publishes the complete index
+            loadedFrom = filePath;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read LiDAR data file " + filePath, e);
+        }
+    }
+
+    /**
+     * @return The measurements in memory, read-only; for a binary data file, views of all of its measurements;
+     *         while streaming, a copy of those read and not dropped yet.
+     */
+    public List<StampedCloudPoints> getCloudPoints() {
+        if (stream != null) {
+            synchronized (this) {
+                return new ArrayList<>(index.cloudPoints);
+            }
+        }
+        MappedLiDarData binary = mapped;
+        return binary != null ? binary.asList() : Collections.unmodifiableList(index.cloudPoints);
+    }
+
+    /**
+     * @param time The time of the measurement.
+     * @param id   The id of the measured object.
+     * @return The cloud points of object {@code id} measured at {@code time}, or null if there are none.
+     */
+    public StampedCloudPoints find(int time, String id) {
+        if (stream != null) {
+            synchronized (this) {
+                readThrough(time);
+                return index.find(time, id);
+            }
+        }
+        MappedLiDarData binary = mapped;
+        return binary != null ? binary.find(time, id) : index.find(time, id);
+    }
+
+    /**
+     * @param time The time of the measurements.
+     * @return true if the LiDAR reported an error at {@code time}.
+     */
+    public boolean hasErrorAt(int time) {
+        if (stream != null) {
+            synchronized (this) {
+                readThrough(time);
+                return errorTimes.contains(time);
+            }
+        }
+        return find(time, "ERROR") != null;
+    }
+
+    /**
+     * @return The latest measurement time in the database, or 0 if it is empty; while streaming,
+     *         only the measurements read so far are known.
+     */
+    public int getLastTime() {
+        if (stream != null) {
+            synchronized (this) {
+                return index.lastTime;
+            }
+        }
+        MappedLiDarData binary = mapped;
+        return binary != null ? binary.getLastTime() : index.lastTime;
+    }
+
+    /**
+     * While streaming, reads the measurements up to {@code time} and drops those before the watermark.
+     */
+    private void readThrough(int time) {
+        Index streamed = index;
+        for (StampedCloudPoints points : stream.readThrough(time)) {
+            if ("ERROR".equals(points.getId())) {
+                errorTimes.add(points.getTime());
+            }
+            streamed.add(points);
+        }
+        int before = watermark.getAsInt();
+        int dropped = 0;
+        while (dropped < streamed.cloudPoints.size() && streamed.cloudPoints.get(dropped).getTime() < before) {
+            streamed.byTime.remove(streamed.cloudPoints.get(dropped).getTime()); // Every measurement of that time is dropped
+            dropped++;
+        }
+        streamed.cloudPoints.subList(0, dropped).clear();
+    }
+
+    /**
+     * Measurements in time order, indexed by time and object id, so a lookup costs the same however long
+     * the recording is.
+     */
+    private static final class Index {
+        private final List<StampedCloudPoints> cloudPoints = new ArrayList<>();
+        private final Map<Integer, Map<String, StampedCloudPoints>> byTime = new HashMap<>(); // cloudPoints indexed by time, then by object id
+        private int lastTime;
+
+        /**
+         * Adds {@code points} to the measurements and to the index; for a time and id measured
+         * more than once, lookups keep returning the first measurement, as in the file.
+         */
+        private void add(StampedCloudPoints points) {
+            cloudPoints.add(points);
+            byTime.computeIfAbsent(points.getTime(), time -> new HashMap<>(4)).putIfAbsent(points.getId(), points);
+            lastTime = Math.max(lastTime, points.getTime());
+        }
+
+        private StampedCloudPoints find(int time, String id) {
+            Map<String, StampedCloudPoints> atTime = byTime.get(time);
+            return atTime == null ? null : atTime.get(id);
+        }
+    }
 
 }
@@ -11,7 +11,7 @@ import java.util.List;
 public class LiDarWorkerTracker {
     private final int Id;
     private final int frequency;
-    private final STATUS status;
+    private volatile STATUS status;
     private final List<TrackedObject> lastTrackedObjects;
 
     // --------------------- constructor --------------------
@@ -27,5 +27,27 @@ public class LiDarWorkerTracker {
     public int getFrequency() {return frequency;}
     public STATUS getStatus() {return status;}
     public List<TrackedObject> getLastTrackedObjects() {return lastTrackedObjects;}
+    public void setStatus(STATUS status) {this.status = status;}
+
+    /**
+     * Looks up the cloud points of every object in {@code detected} and turns them into tracked objects.
+     * The result is also kept as this worker's last tracked objects.
+     *
+     * @param detected the objects a camera detected at a single time.
+     * @param database the database holding the LiDAR measurements.
+     * @return the tracked objects, one for each detected object the database has measurements for.
+     */
+    public List<TrackedObject> track(StampedDetectedObjects detected, LiDarDataBase database) {
+        List<TrackedObject> tracked = new ArrayList<>();
+        for (DetectedObject object : detected.getDetectedObjectsList()) {
+            StampedCloudPoints points = database.find(detected.getTime(), object.getId());
+            if (points != null) {
+                tracked.add(new TrackedObject(object.getId(), detected.getTime(), object.getDescription(), points.getCloudPoints()));
+            }
+        }
+        lastTrackedObjects.clear();
+        lastTrackedObjects.addAll(tracked);
+        return tracked;
+    }
 
 }
@@ -0,0 +1,416 @@
+package bgu.spl.mics.application.objects;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * LiDAR measurements in a binary file that is memory-mapped rather than parsed: opening it reads
+ * only the header and the object ids, the points of a measurement are a view of the mapped file,
+ * and the file's pages are shared by every run, and every process, that maps it.
+ * <p>
+ * The file is written by {@link #write(List, File)}, from the measurements of a JSON data file.
+ * Its layout, in little-endian order:
+ * <pre>
+ * header   int magic ("LDB1"), int version, int ids, int ticks, int records, int points
+ * ids      per object id: int length, its UTF-8 bytes, padded to a multiple of 4 bytes
+ * ticks    int time per tick, increasing; then int first record per tick, and the number of
+ *          records, so that the records of tick k are [first(k), first(k + 1))
+ * records  per measurement, by time and then in the order of the JSON file:
+ *          int time, int id, int first point, int points
+ * padding  to a multiple of 8 bytes
+ * points   per point: double x, double y
+ * </pre>
+ * A file is mapped in segments of 1 GB, as one buffer could map no more than 2 GB. Every value is
+ * aligned to its size, so none straddles two segments; only the points of a measurement may, and
+ * those are then copied rather than viewed.
+ */
+public final class MappedLiDarData {
+// --------------------- fields -------------------------
+    private static final int MAGIC = 0x3142444C; // "LDB1", read as a little-endian int
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 6 * Integer.BYTES;
+    private static final int RECORD_INTS = 4;
+
+    private static final int SEGMENT_SHIFT = 30; // 1 GB segments
+
+    private final String[] ids;
+    private final Map<String, Integer> idIndex;
+    private final Segments file;
+    private final int ticks;
+    private final int recordCount;
+    private final long times;        // Offset of the tick times
+    private final long firstRecords; // Offset of the first record of every tick
+    private final long records;      // Offset of the record table
+    private final long points;       // Offset of the points
+
+// --------------------- constructor --------------------
+    private MappedLiDarData(String[] ids, Segments file, int ticks, int recordCount, long times, long firstRecords,
+                            long records, long points) {
+        this.ids = ids;
+        this.idIndex = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            idIndex.put(ids[i], i);
+        }
+        this.file = file;
+        this.ticks = ticks;
+        this.recordCount = recordCount;
+        this.times = times;
+        this.firstRecords = firstRecords;
+        this.records = records;
+        this.points = points;
+    }
+
+// --------------------- methods ------------------------
+    /**
+     * @param file a LiDAR data file.
+     * @return true if {@code file} is in this binary format rather than JSON.
+     * @throws IOException if the file cannot be read.
+     */
+    public static boolean isBinary(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return Integer.reverseBytes(in.readInt()) == MAGIC;
+        } catch (EOFException e) {
+            return false; // Shorter than a header
+        }
+    }
+
+    /**
+     * Maps {@code file}; the mapping stays valid until the returned instance is unreachable.
+     *
+     * @param file a file written by {@link #write(List, File)}.
+     * @return the measurements in the file.
+     * @throws IOException if the file cannot be mapped, or is not in this format.
+     */
+    public static MappedLiDarData open(File file) throws IOException {
+        return open(file, SEGMENT_SHIFT);
+    }
+
+    /**
+     * As {@link #open(File)}, mapping segments of {@code 1 << segmentShift} bytes.
+     */
+    static MappedLiDarData open(File file, int segmentShift) throws IOException {
+        Segments mapped;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            mapped = new Segments(channel, segmentShift);
+        }
+        if (mapped.size < HEADER_BYTES || mapped.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary LiDAR data file: " + file);
+        }
+        if (mapped.getInt(4) != VERSION) {
+            throw new IOException("Unsupported binary LiDAR data version in " + file);
+        }
+        int idCount = mapped.getInt(8);
+        int ticks = mapped.getInt(12);
+        int records = mapped.getInt(16);
+        int points = mapped.getInt(20);
+        if (idCount < 0 || ticks < 0 || records < 0 || points < 0) {
+            throw new IOException("Corrupt binary LiDAR data file " + file);
+        }
+        long at = HEADER_BYTES;
+        String[] ids = new String[idCount];
+        for (int i = 0; i < ids.length; i++) {
+            int length = at + Integer.BYTES <= mapped.size ? mapped.getInt(at) : -1;
+            if (length < 0 || at + Integer.BYTES + length > mapped.size) {
+                throw new IOException("Corrupt binary LiDAR data file " + file);
+            }
+            ids[i] = new String(mapped.getBytes(at + Integer.BYTES, length), StandardCharsets.UTF_8);
+            at = align(at + Integer.BYTES + length, Integer.BYTES);
+        }
+        long times = at;
+        long firstRecords = times + (long) Integer.BYTES * ticks;
+        long recordTable = firstRecords + Integer.BYTES * (ticks + 1L);
+        long pointTable = align(recordTable + (long) Integer.BYTES * RECORD_INTS * records, Double.BYTES);
+        if (pointTable + 2L * Double.BYTES * points > mapped.size) {
+            throw new IOException("Corrupt binary LiDAR data file " + file);
+        }
+        return new MappedLiDarData(ids, mapped, ticks, records, times, firstRecords, recordTable, pointTable);
+    }
+
+    /**
+     * Writes {@code measurements} to {@code file} in this format.
+     *
+     * @param measurements LiDAR measurements, in any order; for a time and id measured more than
+     *                     once, {@link #find(int, String)} returns the first of them, as
+     *                     {@link LiDarDataBase} does for a JSON file.
+     * @param file         the file to write, replaced if it exists.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(List<StampedCloudPoints> measurements, File file) throws IOException {
+        List<StampedCloudPoints> sorted = new ArrayList<>(measurements);
+        sorted.sort(Comparator.comparingInt(StampedCloudPoints::getTime)); // Stable: measurements of a tick stay in order
+
+        Map<String, Integer> idIndex = new LinkedHashMap<>();
+        List<byte[]> ids = new ArrayList<>();
+        int ticks = 0;
+        long points = 0;
+        for (int r = 0; r < sorted.size(); r++) {
+            StampedCloudPoints measurement = sorted.get(r);
+            if (!idIndex.containsKey(measurement.getId())) {
+                idIndex.put(measurement.getId(), ids.size());
+                ids.add(measurement.getId().getBytes(StandardCharsets.UTF_8));
+            }
+            if (r == 0 || measurement.getTime() != sorted.get(r - 1).getTime()) {
+                ticks++;
+            }
+            points += measurement.getCloudPoints().size();
+        }
+
+        if (points > Integer.MAX_VALUE) {
+            throw new IOException("The LiDAR data has more points than a binary file can index: " + points);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.putInt(MAGIC).putInt(VERSION).putInt(ids.size()).putInt(ticks).putInt(sorted.size()).putInt((int) points);
+            for (byte[] id : ids) {
+                out.putInt(id.length).put(id);
+                out.align(Integer.BYTES);
+            }
+            for (int r = 0; r < sorted.size(); r++) { // Tick times
+                if (r == 0 || sorted.get(r).getTime() != sorted.get(r - 1).getTime()) {
+                    out.putInt(sorted.get(r).getTime());
+                }
+            }
+            for (int r = 0; r < sorted.size(); r++) { // First record of every tick
+                if (r == 0 || sorted.get(r).getTime() != sorted.get(r - 1).getTime()) {
+                    out.putInt(r);
+                }
+            }
+            out.putInt(sorted.size());
+            int firstPoint = 0;
+            for (StampedCloudPoints measurement : sorted) {
+                int count = measurement.getCloudPoints().size();
+                out.putInt(measurement.getTime()).putInt(idIndex.get(measurement.getId())).putInt(firstPoint).putInt(count);
+                firstPoint += count;
+            }
+            out.align(Double.BYTES);
+            for (StampedCloudPoints measurement : sorted) {
+                PackedPoints cloud = measurement.getCloudPoints();
+                for (int i = 0; i < cloud.size(); i++) {
+                    out.putDouble(cloud.getX(i)).putDouble(cloud.getY(i));
+                }
+            }
+            out.flush();
+            channel.force(false);
+        }
+    }
+
+    /**
+     * @param time The time of the measurement.
+     * @param id   The id of the measured object.
+     * @return The cloud points of object {@code id} measured at {@code time}, or null if there are none.
+     */
+    public StampedCloudPoints find(int time, String id) {
+        Integer index = idIndex.get(id);
+        int tick = tickOf(time);
+        if (index == null || tick < 0) {
+            return null;
+        }
+        for (int r = firstRecord(tick); r < firstRecord(tick + 1); r++) {
+            if (recordInt(r, 1) == index) {
+                return measurement(r);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The latest measurement time in the file, or 0 if it is empty.
+     */
+    public int getLastTime() {return ticks == 0 ? 0 : time(ticks - 1);}
+
+    /**
+     * @return The measurements in the file, by time; every element is a new view of the file.
+     */
+    public List<StampedCloudPoints> asList() {
+        return new MeasurementList();
+    }
+
+    private StampedCloudPoints measurement(int record) {
+        int firstPoint = recordInt(record, 2);
+        int count = recordInt(record, 3);
+        return new StampedCloudPoints(ids[recordInt(record, 1)], recordInt(record, 0),
+                new PackedPoints(file.getDoubles(points + 2L * Double.BYTES * firstPoint, 2 * count)));
+    }
+
+    private int time(int tick) {return file.getInt(times + (long) Integer.BYTES * tick);}
+
+    private int firstRecord(int tick) {return file.getInt(firstRecords + (long) Integer.BYTES * tick);}
+
+    private int recordInt(int record, int field) {return file.getInt(records + (long) Integer.BYTES * (RECORD_INTS * (long) record + field));}
+
+    /**
+     * @return the index of {@code time} in the tick table, or -1 if there are no measurements at that time.
+     */
+    private int tickOf(int time) {
+        int low = 0;
+        int high = ticks - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleTime = time(middle);
+            if (middleTime < time) {
+                low = middle + 1;
+            } else if (middleTime > time) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private static long align(long position, int alignment) {
+        return (position + alignment - 1) / alignment * alignment;
+    }
+
+    private class MeasurementList extends AbstractList<StampedCloudPoints> implements RandomAccess {
+        @Override
+        public StampedCloudPoints get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+            }
+            return measurement(index);
+        }
+
+        @Override
+        public int size() {return recordCount;}
+    }
+
+    /**
+     * A file mapped as consecutive read-only buffers of {@code 1 << shift} bytes each, read at absolute
+     * offsets, so it may be shared between threads.
+     */
+    private static final class Segments {
+        private final int shift;
+        private final long mask;
+        private final long size;
+        private final ByteBuffer[] bytes;
+        private final DoubleBuffer[] doubles; // The same segments, as doubles
+
+        private Segments(FileChannel channel, int shift) throws IOException {
+            this.shift = shift;
+            this.mask = (1L << shift) - 1;
+            this.size = channel.size();
+            int count = (int) ((size + mask) >>> shift);
+            this.bytes = new ByteBuffer[count];
+            this.doubles = new DoubleBuffer[count];
+            for (int k = 0; k < count; k++) {
+                long start = (long) k << shift;
+                bytes[k] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(mask + 1, size - start))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                doubles[k] = bytes[k].asDoubleBuffer();
+            }
+        }
+
+        /**
+         * @param at an offset aligned to 4 bytes, so the int lies in a single segment.
+         */
+        private int getInt(long at) {
+            return bytes[(int) (at >>> shift)].getInt((int) (at & mask));
+        }
+
+        private byte[] getBytes(long at, int length) {
+            byte[] copy = new byte[length];
+            for (int i = 0; i < length; i++) {
+                copy[i] = bytes[(int) ((at + i) >>> shift)].get((int) ((at + i) & mask));
+            }
+            return copy;
+        }
+
+        /**
+         * @param at an offset aligned to 8 bytes.
+         * @return a view of the {@code count} doubles at {@code at}, or a copy if they straddle two segments.
+         */
+        private DoubleBuffer getDoubles(long at, int count) {
+            int segment = (int) (at >>> shift);
+            int index = (int) ((at & mask) / Double.BYTES);
+            if (index + count <= doubles[segment].limit()) {
+                return doubles[segment].slice(index, count);
+            }
+            double[] copy = new double[count];
+            for (int i = 0; i < count; i++) {
+                long offset = at + (long) Double.BYTES * i;
+                copy[i] = bytes[(int) (offset >>> shift)].getDouble((int) (offset & mask));
+            }
+            return DoubleBuffer.wrap(copy);
+        }
+    }
+
+    /**
+     * Buffers little-endian writes to a channel.
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private Output putInt(int value) throws IOException {
+            room(Integer.BYTES).putInt(value);
+            position += Integer.BYTES;
+            return this;
+        }
+
+        private Output putDouble(double value) throws IOException {
+            room(Double.BYTES).putDouble(value);
+            position += Double.BYTES;
+            return this;
+        }
+
+        private Output put(byte[] bytes) throws IOException {
+            for (int from = 0; from < bytes.length; ) {
+                int length = Math.min(bytes.length - from, room(1).remaining());
+                buffer.put(bytes, from, length);
+                from += length;
+            }
+            position += bytes.length;
+            return this;
+        }
+
+        /**
+         * Pads with zeros to a multiple of {@code alignment} bytes.
+         */
+        private void align(int alignment) throws IOException {
+            while (position % alignment != 0) {
+                room(1).put((byte) 0);
+                position++;
+            }
+        }
+
+        private ByteBuffer room(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            return buffer;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
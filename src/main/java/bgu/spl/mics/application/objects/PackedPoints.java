@@ -0,0 +1,215 @@
+package bgu.spl.mics.application.objects;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A read-only sequence of 2D points, packed as x0, y0, x1, y1, ... in a single
+ * {@code double[]} instead of one {@link CloudPoint} object (or list of boxed
+ * coordinates) per point. The doubles may also be a view of a memory-mapped file,
+ * as for {@link MappedLiDarData}, or of a {@link LandMark}'s coordinates, which
+ * change as it is updated.
+ * In JSON, points are written as a list of {@code {"x": .., "y": ..}} objects,
+ * as a {@code List<CloudPoint>} would be.
+ */
+@JsonAdapter(PackedPoints.ObjectsAdapter.class)
+public final class PackedPoints implements Serializable {
+// --------------------- fields -------------------------
+    private static final long serialVersionUID = 1L;
+
+    public static final PackedPoints EMPTY = new PackedPoints(new double[0]);
+
+    private transient DoubleBuffer xy; // Only read with absolute gets, so views can be shared between threads
+
+// --------------------- constructor --------------------
+    /**
+     * @param xy the coordinates, x0, y0, x1, y1, ...; owned by the new instance from now on.
+     */
+    public PackedPoints(double[] xy) {
+        this(DoubleBuffer.wrap(xy));
+    }
+
+    /**
+     * @param xy the coordinates, x0, y0, x1, y1, ..., from index 0 to the buffer's limit; not copied.
+     */
+    PackedPoints(DoubleBuffer xy) {
+        if (xy.limit() % 2 != 0) {
+            throw new IllegalArgumentException("Expecting an x and a y for every point, got " + xy.limit() + " coordinates");
+        }
+        this.xy = xy;
+    }
+
+// --------------------- methods ------------------------
+    public int size() {return xy.limit() / 2;}
+    public double getX(int i) {return xy.get(2 * i);}
+    public double getY(int i) {return xy.get(2 * i + 1);}
+
+    /**
+     * Copies the coordinates, x0, y0, x1, y1, ..., to {@code dst} from index {@code offset} on.
+     */
+    public void copyTo(double[] dst, int offset) {
+        xy.get(0, dst, offset, xy.limit());
+    }
+
+    /**
+     * @param i the index of the point.
+     * @return the point as a new CloudPoint.
+     */
+    public CloudPoint get(int i) {
+        return new CloudPoint(getX(i), getY(i));
+    }
+
+    /**
+     * @return the points as new CloudPoints.
+     */
+    public CloudPoint[] toArray() {
+        CloudPoint[] points = new CloudPoint[size()];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = get(i);
+        }
+        return points;
+    }
+
+    // A mapped buffer is not serializable; the coordinates are written as plain doubles
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(xy.limit());
+        for (int i = 0; i < xy.limit(); i++) {
+            out.writeDouble(xy.get(i));
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        double[] coordinates = new double[in.readInt()];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = in.readDouble();
+        }
+        xy = DoubleBuffer.wrap(coordinates);
+    }
+
+    /**
+     * Reads and writes points as a list of {@code {"x": .., "y": ..}} objects.
+     */
+    static final class ObjectsAdapter extends TypeAdapter<PackedPoints> {
+        @Override
+        public void write(JsonWriter out, PackedPoints points) throws IOException {
+            if (points == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginArray();
+            for (int i = 0; i < points.size(); i++) {
+                out.beginObject();
+                out.name("x").value(points.getX(i));
+                out.name("y").value(points.getY(i));
+                out.endObject();
+            }
+            out.endArray();
+        }
+
+        @Override
+        public PackedPoints read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Builder builder = new Builder();
+            in.beginArray();
+            while (in.hasNext()) {
+                double x = 0;
+                double y = 0;
+                in.beginObject();
+                while (in.hasNext()) {
+                    String name = in.nextName();
+                    if (name.equals("x")) {
+                        x = in.nextDouble();
+                    } else if (name.equals("y")) {
+                        y = in.nextDouble();
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+                builder.add(x, y);
+            }
+            in.endArray();
+            return builder.build();
+        }
+    }
+
+    /**
+     * Reads and writes points as a list of {@code [x, y, z]} coordinate arrays, as in the LiDAR
+     * data file; the z coordinate is not used, so it is skipped when reading and not written.
+     */
+    static final class CoordinatesAdapter extends TypeAdapter<PackedPoints> {
+        @Override
+        public void write(JsonWriter out, PackedPoints points) throws IOException {
+            if (points == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginArray();
+            for (int i = 0; i < points.size(); i++) {
+                out.beginArray().value(points.getX(i)).value(points.getY(i)).endArray();
+            }
+            out.endArray();
+        }
+
+        @Override
+        public PackedPoints read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Builder builder = new Builder();
+            in.beginArray();
+            while (in.hasNext()) {
+                in.beginArray();
+                double x = in.nextDouble();
+                double y = in.nextDouble();
+                while (in.hasNext()) {
+                    in.skipValue();
+                }
+                in.endArray();
+                builder.add(x, y);
+            }
+            in.endArray();
+            return builder.build();
+        }
+    }
+
+    /**
+     * Collects points one at a time.
+     */
+    public static final class Builder {
+        private double[] xy = new double[16];
+        private int length;
+
+        public Builder add(double x, double y) {
+            if (length + 2 > xy.length) {
+                xy = Arrays.copyOf(xy, xy.length * 2);
+            }
+            xy[length++] = x;
+            xy[length++] = y;
+            return this;
+        }
+
+        /**
+         * @return the points added so far, in a right-sized array.
+         */
+        public PackedPoints build() {
+            return length == 0 ? EMPTY : new PackedPoints(Arrays.copyOf(xy, length));
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package bgu.spl.mics.application.objects;
 
+import java.io.Serializable;
+
 /**
  * Represents the robot's pose (position and orientation) in the environment.
  * Includes x, y coordinates and the yaw angle relative to a global coordinate system.
  */
-public class Pose {
+public class Pose implements Serializable {
 // --------------------- fields -------------------------
+    private static final long serialVersionUID = 1L;
+
     private final float x;
     private final float y;
     private final float yaw;
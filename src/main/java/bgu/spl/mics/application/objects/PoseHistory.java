@@ -0,0 +1,182 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The robot's poses by tick, in primitive arrays indexed by the tick, so that finding the pose
+ * of a tick takes constant time. A history either keeps every pose added, or only those of the
+ * last {@code retention} ticks, in a ring that never grows.
+ * A tick without a pose of its own, between two ticks that have one, is interpolated.
+ */
+public class PoseHistory {
+// --------------------- fields -------------------------
+    private static final int NONE = -1; // In times, for a slot with no pose
+
+    private final int retention; // 0 to keep every pose
+    private final boolean bounded;
+    private int[] times; // The tick of the pose in every slot, or NONE
+    private float[] xs;
+    private float[] ys;
+    private float[] yaws;
+    private int earliest = Integer.MAX_VALUE;
+    private int latest = NONE;
+
+// --------------------- constructor --------------------
+    /**
+     * Creates a history that keeps every pose added.
+     */
+    public PoseHistory() {
+        this(0);
+    }
+
+    /**
+     * @param retention the number of ticks, up to the latest, whose poses are kept; 0 to keep every pose.
+     */
+    public PoseHistory(int retention) {
+        if (retention < 0) {
+            throw new IllegalArgumentException("retention must not be negative, got " + retention);
+        }
+        this.retention = retention;
+        this.bounded = retention > 0;
+        // A power of two for a bounded ring, so a slot is tick & (length - 1)
+        allocate(bounded ? Integer.highestOneBit(Math.max(1, retention - 1)) << 1 : 64);
+    }
+
+// --------------------- methods ------------------------
+    /**
+     * @return the number of ticks whose poses are kept, up to the latest; 0 if every pose is kept.
+     */
+    public int getRetention() {return retention;}
+
+    /**
+     * @return the latest tick with a pose, or -1 if there is none.
+     */
+    public int getLatestTime() {return latest;}
+
+    /**
+     * Adds {@code pose}, unless there already is a pose at its tick (the first one is kept), or it
+     * is older than the retained ticks.
+     */
+    public void add(Pose pose) {
+        int time = pose.getTime();
+        if (time < 0) {
+            throw new IllegalArgumentException("A pose's time must not be negative, got " + time);
+        }
+        if (bounded && time <= latest - retention) {
+            return;
+        }
+        if (!bounded && time >= times.length) {
+            allocate(Math.max(time + 1, 2 * times.length));
+        }
+        int slot = slot(time);
+        if (times[slot] == time) {
+            return;
+        }
+        times[slot] = time;
+        xs[slot] = pose.getX();
+        ys[slot] = pose.getY();
+        yaws[slot] = pose.getYaw();
+        latest = Math.max(latest, time);
+        earliest = Math.min(earliest, time);
+    }
+
+    public void addAll(List<Pose> poses) {
+        for (Pose pose : poses) {
+            add(pose);
+        }
+    }
+
+    /**
+     * @param time the tick.
+     * @return the pose added at {@code time}, or null if there is none, or it is no longer retained.
+     */
+    public Pose get(int time) {
+        if (!contains(time)) {
+            return null;
+        }
+        int slot = slot(time);
+        return new Pose(xs[slot], ys[slot], yaws[slot], time);
+    }
+
+    /**
+     * @param time the tick.
+     * @return the pose at {@code time}; if there is none but there are poses both before and
+     *         after it, the pose interpolated linearly between the nearest of them (the yaw along
+     *         the shorter arc); otherwise null.
+     */
+    public Pose interpolate(int time) {
+        if (contains(time)) {
+            return get(time);
+        }
+        if (time > latest || time < oldest()) {
+            return null;
+        }
+        int before = time - 1;
+        while (before >= oldest() && !contains(before)) {
+            before--;
+        }
+        int after = time + 1;
+        while (after <= latest && !contains(after)) {
+            after++;
+        }
+        if (before < oldest() || after > latest) {
+            return null;
+        }
+        int from = slot(before);
+        int to = slot(after);
+        float fraction = (float) (time - before) / (after - before);
+        float turn = ((yaws[to] - yaws[from]) % 360 + 540) % 360 - 180; // In [-180, 180)
+        return new Pose(xs[from] + fraction * (xs[to] - xs[from]),
+                ys[from] + fraction * (ys[to] - ys[from]),
+                yaws[from] + fraction * turn,
+                time);
+    }
+
+    /**
+     * @return the retained poses, by time.
+     */
+    public List<Pose> toList() {
+        List<Pose> poses = new ArrayList<>();
+        for (int time = oldest(); time <= latest; time++) {
+            if (contains(time)) {
+                poses.add(get(time));
+            }
+        }
+        return poses;
+    }
+
+    public void clear() {
+        Arrays.fill(times, NONE);
+        earliest = Integer.MAX_VALUE;
+        latest = NONE;
+    }
+
+    /**
+     * @return the earliest tick that may still have a pose.
+     */
+    private int oldest() {
+        return bounded ? Math.max(earliest, latest - retention + 1) : earliest;
+    }
+
+    private boolean contains(int time) {
+        return time >= 0 && time >= oldest() && time <= latest && times[slot(time)] == time;
+    }
+
+    private int slot(int time) {
+        return bounded ? time & (times.length - 1) : time;
+    }
+
+    /**
+     * Creates the arrays, or grows them to {@code length} slots; a bounded ring never grows.
+     */
+    private void allocate(int length) {
+        int previous = times == null ? 0 : times.length;
+        times = times == null ? new int[length] : Arrays.copyOf(times, length);
+        Arrays.fill(times, previous, length, NONE);
+        xs = xs == null ? new float[length] : Arrays.copyOf(xs, length);
+        ys = ys == null ? new float[length] : Arrays.copyOf(ys, length);
+        yaws = yaws == null ? new float[length] : Arrays.copyOf(yaws, length);
+    }
+}
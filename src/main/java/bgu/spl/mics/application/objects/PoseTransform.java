@@ -0,0 +1,41 @@
+package bgu.spl.mics.application.objects;
+
+/**
+ * The transform from the robot's coordinate system at a pose to the charging station's:
+ * a rotation by the pose's yaw (given in degrees) and a translation by the pose's position.
+ * The sine and cosine are computed once, when the transform is created.
+ */
+public final class PoseTransform {
+// --------------------- fields -------------------------
+    private final double cos;
+    private final double sin;
+    private final double x;
+    private final double y;
+
+// --------------------- constructor --------------------
+    public PoseTransform(Pose pose) {
+        double yaw = Math.toRadians(pose.getYaw());
+        this.cos = Math.cos(yaw);
+        this.sin = Math.sin(yaw);
+        this.x = pose.getX();
+        this.y = pose.getY();
+    }
+
+// --------------------- methods ------------------------
+    /**
+     * Transforms points in place.
+     *
+     * @param xy     packed coordinates, x0, y0, x1, y1, ...
+     * @param offset the index of the first point's x coordinate in {@code xy}.
+     * @param count  the number of points to transform.
+     */
+    public void apply(double[] xy, int offset, int count) {
+        int end = offset + 2 * count;
+        for (int i = offset; i < end; i += 2) {
+            double px = xy[i];
+            double py = xy[i + 1];
+            xy[i] = cos * px - sin * py + x;
+            xy[i + 1] = sin * px + cos * py + y;
+        }
+    }
+}
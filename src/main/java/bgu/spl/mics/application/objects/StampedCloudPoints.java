@@ -1,30 +1,28 @@
 package bgu.spl.mics.application.objects;
 
-import java.util.List;
-import java.util.ArrayList;
+import com.google.gson.annotations.JsonAdapter;
 
 /**
  * Represents a group of cloud points corresponding to a specific timestamp.
  * Used by the LiDAR system to store and process point cloud data for tracked objects.
+ * The points are read from the [x, y, z] coordinate lists of the data file into a
+ * packed array, without the unused z coordinate.
  */
 public class StampedCloudPoints {
 // --------------------- fields -------------------------
     private final String id;
     private final int time;
-    private final List<List<Double>> cloudPoints;
+    @JsonAdapter(PackedPoints.CoordinatesAdapter.class)
+    private final PackedPoints cloudPoints;
 
 // --------------------- constructor --------------------
-    public StampedCloudPoints(String id, int time){
+    public StampedCloudPoints(String id, int time, PackedPoints cloudPoints){
         this.id = id;
         this.time = time;
-        this.cloudPoints = new ArrayList<>();
+        this.cloudPoints = cloudPoints;
     }
 // --------------------- methods ------------------------
     public String getId() {return id;}
     public int getTime() {return time;}
-    public List<List<Double>> getCloudPoints() {return cloudPoints;}
-
-    public CloudPoint[] cloudPointsToArray() { // FROM LIST OF LISTS TO AN ARRAY OF CLOUDPOINTS
-
-    }
+    public PackedPoints getCloudPoints() {return cloudPoints == null ? PackedPoints.EMPTY : cloudPoints;}
 }
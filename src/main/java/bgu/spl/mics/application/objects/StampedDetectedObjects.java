@@ -1,19 +1,26 @@
 package bgu.spl.mics.application.objects;
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.ArrayList;
 
+import com.google.gson.annotations.SerializedName;
+
 /**
  * Represents objects detected by the camera at a specific timestamp.
  * Includes the time of detection and a list of detected objects.
  */
-public class StampedDetectedObjects {
+public class StampedDetectedObjects implements Serializable {
 // --------------------- fields -------------------------
+    private static final long serialVersionUID = 1L;
+
     private int time;
-    private List<DetectedObject> detectedObjectsList;
+    @SerializedName("detectedObjects")
+    private ArrayList<DetectedObject> detectedObjectsList; // An ArrayList, so detections can be spilled to disk
 
 // --------------------- constructor --------------------
     public StampedDetectedObjects(int time){
+        this.time = time;
         this.detectedObjectsList = new ArrayList<>();
     }
 
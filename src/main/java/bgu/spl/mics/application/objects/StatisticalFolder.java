@@ -1,5 +1,7 @@
 package bgu.spl.mics.application.objects;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Holds statistical information about the system's operation.
  * This class aggregates metrics such as the runtime of the system,
@@ -7,6 +9,28 @@ package bgu.spl.mics.application.objects;
  */
 public class StatisticalFolder {
 // --------------------- fields -------------------------
+    private final AtomicInteger systemRuntime;
+    private final AtomicInteger numDetectedObjects;
+    private final AtomicInteger numTrackedObjects;
+    private final AtomicInteger numLandmarks;
+
 // --------------------- constructor --------------------
+    public StatisticalFolder(){
+        this.systemRuntime = new AtomicInteger();
+        this.numDetectedObjects = new AtomicInteger();
+        this.numTrackedObjects = new AtomicInteger();
+        this.numLandmarks = new AtomicInteger();
+    }
+
 // --------------------- methods ------------------------
+    public int getSystemRuntime() {return systemRuntime.get();}
+    public int getNumDetectedObjects() {return numDetectedObjects.get();}
+    public int getNumTrackedObjects() {return numTrackedObjects.get();}
+    public int getNumLandmarks() {return numLandmarks.get();}
+
+    public void incrementSystemRuntime() {systemRuntime.incrementAndGet();}
+    public void addDetectedObjects(int count) {numDetectedObjects.addAndGet(count);}
+    public void addTrackedObjects(int count) {numTrackedObjects.addAndGet(count);}
+    public void incrementLandmarks() {numLandmarks.incrementAndGet();}
+    public void addLandmarks(int count) {numLandmarks.addAndGet(count);}
 }
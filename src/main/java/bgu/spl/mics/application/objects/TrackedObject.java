@@ -1,21 +1,22 @@
 package bgu.spl.mics.application.objects;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.Serializable;
 
 /**
  * Represents an object tracked by the LiDAR.
  * This object includes information about the tracked object's ID, description, 
  * time of tracking, and coordinates in the environment.
  */
-public class TrackedObject {
+public class TrackedObject implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final String Id;
     private final int time; // The time the object was tracked
     private final String description;
-    private final CloudPoint[] coordinates;
+    private final PackedPoints coordinates;
 
     // --------------------- constructor --------------------
-    public TrackedObject(String id, int time, String description, CloudPoint[] coordinates){
+    public TrackedObject(String id, int time, String description, PackedPoints coordinates){
         this.Id = id;
         this.time = time;
         this.description = description;
@@ -26,5 +27,5 @@ public class TrackedObject {
     public String getId() {return Id;}
     public int getTime() {return time;}
     public String getDescription() {return description;}
-    public CloudPoint[] getCoordinates() {return coordinates;}
+    public PackedPoints getCoordinates() {return coordinates;}
 }
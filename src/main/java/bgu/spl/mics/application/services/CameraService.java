@@ -1,6 +1,20 @@
 package bgu.spl.mics.application.services;
 
+import java.util.concurrent.CountDownLatch;
+
+import bgu.spl.mics.Future;
+import bgu.spl.mics.MessageBus;
+import bgu.spl.mics.MessageBusImpl;
 import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.messages.CrashedBroadcast;
+import bgu.spl.mics.application.messages.DetectObjectsEvent;
+import bgu.spl.mics.application.messages.TerminatedBroadcast;
+import bgu.spl.mics.application.messages.TickBroadcast;
+import bgu.spl.mics.application.objects.Camera;
+import bgu.spl.mics.application.objects.DetectedObject;
+import bgu.spl.mics.application.objects.STATUS;
+import bgu.spl.mics.application.objects.StampedDetectedObjects;
+import bgu.spl.mics.application.objects.StatisticalFolder;
 
 /**
  * CameraService
@@ -10,4 +24,80 @@ import bgu.spl.mics.MicroService;
  */
 public class CameraService extends MicroService {
 
+    // --------------------- fields --------------------
+    private final Camera camera;
+    private final StatisticalFolder statistics;
+    private final CountDownLatch ready;
+
+    // --------------------- constructor --------------------
+    /**
+     * @param camera     the camera this service reads detections from.
+     * @param statistics the statistics of the run.
+     * @param ready      counted down once the service has subscribed to its messages.
+     */
+    public CameraService(Camera camera, StatisticalFolder statistics, CountDownLatch ready) {
+        this(camera, statistics, ready, MessageBusImpl.getInstance());
+    }
+
+    /**
+     * Same as the constructor above, with the service registered on {@code bus}
+     * instead of the shared {@link MessageBusImpl#getInstance()}.
+     */
+    public CameraService(Camera camera, StatisticalFolder statistics, CountDownLatch ready,
+                         MessageBus bus) {
+        super("Camera" + camera.getId(), bus);
+        this.camera = camera;
+        this.statistics = statistics;
+        this.ready = ready;
+    }
+
+    // --------------------- methods --------------------
+    @Override
+    protected void initialize() {
+        subscribeBroadcast(TickBroadcast.class, tick -> {
+            // Objects detected at time T are sent at tick T + frequency
+            int detectionTime = tick.getTick() - camera.getFrequency();
+            StampedDetectedObjects detected = camera.getDetectedObjectsAt(detectionTime);
+            if (detected != null) {
+                for (DetectedObject object : detected.getDetectedObjectsList()) {
+                    if ("ERROR".equals(object.getId())) {
+                        camera.setStatus(STATUS.ERROR);
+                        sendBroadcast(new CrashedBroadcast(CameraService.class, getName(), object.getDescription()));
+                        terminate();
+                        return;
+                    }
+                }
+                camera.sent(detected.getTime());
+                Future<Boolean> tracked = sendEvent(new DetectObjectsEvent(camera.getId(), detected));
+                if (tracked == null || tracked.isFailed()) {
+                    camera.tracked(detected.getTime()); // No LiDAR worker will look its measurements up
+                } else {
+                    // Runs on the LiDAR worker's thread when it completes the event; the camera does not wait
+                    tracked.onComplete(ok -> {
+                        if (Boolean.TRUE.equals(ok)) {
+                            camera.acknowledge(detected.getTime());
+                        }
+                        camera.tracked(detected.getTime());
+                    });
+                }
+                statistics.addDetectedObjects(detected.getDetectedObjectsList().size());
+            }
+            if (detectionTime >= 0 && !camera.hasDetectionsAfter(detectionTime)) {
+                camera.setStatus(STATUS.DOWN);
+                sendBroadcast(new TerminatedBroadcast(CameraService.class, getName()));
+                terminate();
+            }
+        });
+        subscribeBroadcast(TerminatedBroadcast.class, terminated -> {
+            if (terminated.getSenderType() == TimeService.class) {
+                camera.setStatus(STATUS.DOWN);
+                terminate();
+            }
+        });
+        subscribeBroadcast(CrashedBroadcast.class, crashed -> {
+            camera.setStatus(STATUS.DOWN);
+            terminate();
+        });
+        ready.countDown();
+    }
 }
@@ -0,0 +1,155 @@
+package bgu.spl.mics.application.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import bgu.spl.mics.MessageBus;
+import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.messages.FusionShardEvent;
+import bgu.spl.mics.application.messages.FusionShardFlushBroadcast;
+import bgu.spl.mics.application.messages.FusionShardMapEvent;
+import bgu.spl.mics.application.messages.FusionShardPoseBroadcast;
+import bgu.spl.mics.application.objects.FusionSlam;
+import bgu.spl.mics.application.objects.LandMark;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.objects.StatisticalFolder;
+import bgu.spl.mics.application.objects.TrackedObject;
+
+/**
+ * FusionShardService
+ * •
+ * Responsibilities:
+ * o
+ * Builds one shard of the map, when Fusion-SLAM splits it: the landmarks whose ids hash to the shard.
+ * o
+ * Subscribes to FusionShardEvent, FusionShardPoseBroadcast and FusionShardFlushBroadcast, all sent by
+ * Fusion-SLAM, and processes them as Fusion-SLAM would process the messages they were made from, so
+ * every landmark is updated by the same measurements, in the same order.
+ * o
+ * Does not take part in the termination of the run: Fusion-SLAM flushes it, then it sends its landmarks
+ * back in a FusionShardMapEvent and terminates.
+ */
+public class FusionShardService extends MicroService
+{
+    // --------------------- fields --------------------
+    private final FusionSlam fusionSlam;
+    private final StatisticalFolder statistics;
+    private final CountDownLatch ready;
+    private final List<Arrival> waitingForPose; // Tracked objects that arrived before the pose of their time
+    private final Map<String, long[]> createdBy; // The sequence and arrival numbers that created every landmark
+
+    // --------------------- constructor --------------------
+    /**
+     * @param name       the name of the service.
+     * @param fusionSlam the shard of the map this service builds.
+     * @param statistics the statistics of the run.
+     * @param ready      counted down once the service has subscribed to its messages.
+     * @param bus        the bus the service registers on.
+     */
+    public FusionShardService(String name, FusionSlam fusionSlam, StatisticalFolder statistics,
+                              CountDownLatch ready, MessageBus bus) {
+        super(name, bus);
+        this.fusionSlam = fusionSlam;
+        this.statistics = statistics;
+        this.ready = ready;
+        this.waitingForPose = new ArrayList<>();
+        this.createdBy = new HashMap<>();
+    }
+
+    // --------------------- methods --------------------
+    @Override
+    protected void initialize() {
+        subscribeEvent(FusionShardEvent.class, event -> {
+            List<Arrival> arrived = new ArrayList<>(event.getTrackedObjects().size());
+            for (int i = 0; i < event.getTrackedObjects().size(); i++) {
+                arrived.add(new Arrival(event.getTrackedObjects().get(i), event.getArrivals()[i]));
+            }
+            waitingForPose.addAll(processWithPoses(arrived, event.getSequence()));
+            complete(event, true);
+        });
+        subscribeBroadcast(FusionShardPoseBroadcast.class, broadcast -> {
+            fusionSlam.addPose(broadcast.getPose());
+            if (!waitingForPose.isEmpty()) {
+                List<Arrival> waiting = new ArrayList<>(waitingForPose);
+                waitingForPose.clear();
+                waitingForPose.addAll(processWithPoses(waiting, broadcast.getSequence()));
+            }
+        });
+        subscribeBroadcast(FusionShardFlushBroadcast.class, flush -> {
+            List<LandMark> landmarks = new ArrayList<>(fusionSlam.getLandMarkList());
+            long[] sequences = new long[landmarks.size()];
+            long[] arrivals = new long[landmarks.size()];
+            for (int i = 0; i < landmarks.size(); i++) {
+                long[] key = createdBy.get(landmarks.get(i).getId());
+                sequences[i] = key[0];
+                arrivals[i] = key[1];
+            }
+            sendEvent(new FusionShardMapEvent(landmarks, sequences, arrivals));
+            terminate();
+        });
+        ready.countDown();
+    }
+
+    /**
+     * Same as FusionSlamService's, for the objects of one shard.
+     *
+     * @param sequence the sequence number of the message being processed.
+     * @return the objects whose pose is not known yet, in order.
+     */
+    private List<Arrival> processWithPoses(List<Arrival> objects, long sequence) {
+        List<Arrival> withoutPose = new ArrayList<>();
+        List<Arrival> batch = new ArrayList<>();
+        Pose batchPose = null;
+        for (Arrival arrival : objects) {
+            if (batchPose != null && arrival.object.getTime() == batchPose.getTime()) {
+                batch.add(arrival);
+                continue;
+            }
+            Pose pose = fusionSlam.getPose(arrival.object.getTime());
+            if (pose == null) {
+                withoutPose.add(arrival);
+                continue;
+            }
+            process(batch, batchPose, sequence);
+            batch.clear();
+            batchPose = pose;
+            batch.add(arrival);
+        }
+        process(batch, batchPose, sequence);
+        return withoutPose;
+    }
+
+    private void process(List<Arrival> batch, Pose pose, long sequence) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<TrackedObject> objects = new ArrayList<>(batch.size());
+        for (Arrival arrival : batch) {
+            objects.add(arrival.object);
+        }
+        int added = fusionSlam.processAll(objects, pose);
+        if (added > 0) {
+            statistics.addLandmarks(added);
+            // Only the first object of a new landmark's id finds no key yet
+            for (Arrival arrival : batch) {
+                createdBy.putIfAbsent(arrival.object.getId(), new long[]{sequence, arrival.number});
+            }
+        }
+    }
+
+    /**
+     * A tracked object, with the number of its arrival at Fusion-SLAM.
+     */
+    private static final class Arrival {
+        private final TrackedObject object;
+        private final long number;
+
+        private Arrival(TrackedObject object, long number) {
+            this.object = object;
+            this.number = number;
+        }
+    }
+}
@@ -1,6 +1,36 @@
 package bgu.spl.mics.application.services;
 
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import bgu.spl.mics.Lane;
+import bgu.spl.mics.MessageBus;
+import bgu.spl.mics.MessageBusImpl;
 import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.messages.CrashedBroadcast;
+import bgu.spl.mics.application.messages.FusionShardEvent;
+import bgu.spl.mics.application.messages.FusionShardFlushBroadcast;
+import bgu.spl.mics.application.messages.FusionShardMapEvent;
+import bgu.spl.mics.application.messages.FusionShardPoseBroadcast;
+import bgu.spl.mics.application.messages.PoseEvent;
+import bgu.spl.mics.application.messages.TerminatedBroadcast;
+import bgu.spl.mics.application.messages.TrackedObjectsEvent;
+import bgu.spl.mics.application.objects.FusionSlam;
+import bgu.spl.mics.application.objects.LandMark;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.objects.StatisticalFolder;
+import bgu.spl.mics.application.objects.TrackedObject;
 
 /**
  * FusionSlamService
@@ -10,7 +40,251 @@ import bgu.spl.mics.MicroService;
  * Does not send events. o Subscribes to TickBroadcast, TrackedObjectsEvent, PoseEvent, TerminatedBroadcast, CrashedBroadcast.
  * o
  * Manages the environmental map by processing tracked objects.
+ * o
+ * When the map is split into shards, forwards the tracked objects of every landmark to the
+ * FusionShardService that owns it, and every pose to all of them, then merges their maps at the end.
  */
 public class FusionSlamService extends MicroService
 {
+    // --------------------- fields --------------------
+    private final FusionSlam fusionSlam;
+    private final StatisticalFolder statistics;
+    private final String outputPath;
+    private final CountDownLatch ready;
+    private final List<TrackedObject> waitingForPose; // Tracked objects that arrived before the pose of their time
+    private int activeSensors;
+    private final int shards; // The number of FusionShardServices building the map; 1 to build it here
+    private long sequence; // The number of messages forwarded to the shards
+    private long arrivals; // The number of tracked objects forwarded to the shards
+    private boolean flushing; // Once the shards were asked for their maps
+    private String error; // The crash the output reports, once the shards were asked for their maps
+    private String faultySensor;
+    private final List<FusionShardMapEvent> shardMaps;
+
+    // --------------------- constructor --------------------
+    /**
+     * @param fusionSlam  the map this service builds.
+     * @param statistics  the statistics of the run.
+     * @param sensorCount the number of sensor services (cameras, LiDAR workers and the pose service);
+     *                    the service finishes once all of them have terminated.
+     * @param outputPath  the file the output of the run is written to.
+     * @param ready       counted down once the service has subscribed to its messages.
+     */
+    public FusionSlamService(FusionSlam fusionSlam, StatisticalFolder statistics, int sensorCount,
+                             String outputPath, CountDownLatch ready) {
+        this(fusionSlam, statistics, sensorCount, outputPath, ready, MessageBusImpl.getInstance());
+    }
+
+    /**
+     * Same as the constructor above, with the service registered on {@code bus}
+     * instead of the shared {@link MessageBusImpl#getInstance()}.
+     */
+    public FusionSlamService(FusionSlam fusionSlam, StatisticalFolder statistics, int sensorCount,
+                             String outputPath, CountDownLatch ready, MessageBus bus) {
+        this(fusionSlam, statistics, sensorCount, outputPath, ready, 1, bus);
+    }
+
+    /**
+     * Same as the constructor above, with the map built by {@code shards} FusionShardServices,
+     * which must be registered on {@code bus} with their events routed
+     * {@link bgu.spl.mics.RoutingPolicy#STICKY sticky}; {@code fusionSlam} then receives their merged maps.
+     *
+     * @param shards the number of FusionShardServices; 1 to build the map in this service.
+     */
+    public FusionSlamService(FusionSlam fusionSlam, StatisticalFolder statistics, int sensorCount,
+                             String outputPath, CountDownLatch ready, int shards, MessageBus bus) {
+        super("FusionSlam", bus);
+        if (shards < 1) {
+            throw new IllegalArgumentException("shards must be positive, got " + shards);
+        }
+        this.fusionSlam = fusionSlam;
+        this.statistics = statistics;
+        this.outputPath = outputPath;
+        this.ready = ready;
+        this.waitingForPose = new ArrayList<>();
+        this.activeSensors = sensorCount;
+        this.shards = shards;
+        this.shardMaps = new ArrayList<>();
+    }
+
+    // --------------------- methods --------------------
+    @Override
+    protected void initialize() {
+        subscribeEvent(TrackedObjectsEvent.class, event -> {
+            if (shards > 1) {
+                forward(event.getTrackedObjects());
+            } else {
+                waitingForPose.addAll(processWithPoses(event.getTrackedObjects()));
+            }
+            complete(event, true);
+        });
+        subscribeEvent(PoseEvent.class, event -> {
+            Pose pose = event.getPose();
+            fusionSlam.addPose(pose); // Kept here as well, for the output of a crash
+            if (shards > 1) {
+                if (!flushing) {
+                    sendBroadcast(new FusionShardPoseBroadcast(++sequence, pose));
+                }
+            } else if (!waitingForPose.isEmpty()) {
+                // The pose may be the one an object waits for, or the next one after a tick with no pose
+                List<TrackedObject> waiting = new ArrayList<>(waitingForPose);
+                waitingForPose.clear();
+                waitingForPose.addAll(processWithPoses(waiting));
+            }
+            complete(event, true);
+        });
+        subscribeBroadcast(TerminatedBroadcast.class, terminated -> {
+            if (terminated.getSenderType() == TimeService.class) {
+                finish(null, null);
+            } else if (terminated.getSenderType() != FusionSlamService.class && --activeSensors <= 0) {
+                sendBroadcast(new TerminatedBroadcast(FusionSlamService.class, getName(), Lane.CONTROL));
+                finish(null, null);
+            }
+        });
+        subscribeBroadcast(CrashedBroadcast.class, crashed -> finish(crashed.getError(), crashed.getSenderName()));
+        if (shards > 1) {
+            subscribeEvent(FusionShardMapEvent.class, map -> {
+                shardMaps.add(map);
+                complete(map, true);
+                if (shardMaps.size() == shards) {
+                    mergeShardMaps();
+                    writeOutput(error, faultySensor);
+                    terminate();
+                }
+            });
+        }
+        ready.countDown();
+    }
+
+    /**
+     * Splits {@code objects} by the shard that owns their landmarks, and sends each shard its part,
+     * numbered so that the shards' maps can be merged in the order this service would have built one.
+     */
+    private void forward(List<TrackedObject> objects) {
+        if (flushing) {
+            return;
+        }
+        sequence++;
+        List<List<TrackedObject>> parts = new ArrayList<>(shards);
+        List<long[]> partArrivals = new ArrayList<>(shards);
+        int[] sizes = new int[shards];
+        for (int shard = 0; shard < shards; shard++) {
+            parts.add(new ArrayList<>());
+            partArrivals.add(new long[objects.size()]);
+        }
+        for (TrackedObject object : objects) {
+            int shard = Math.floorMod(object.getId().hashCode(), shards);
+            parts.get(shard).add(object);
+            partArrivals.get(shard)[sizes[shard]++] = ++arrivals;
+        }
+        for (int shard = 0; shard < shards; shard++) {
+            if (sizes[shard] > 0) {
+                sendEvent(new FusionShardEvent(shard, sequence, parts.get(shard), Arrays.copyOf(partArrivals.get(shard), sizes[shard])));
+            }
+        }
+    }
+
+    /**
+     * Adds the landmarks of every shard to the map, in the order they were created: by the message
+     * whose processing created them, then by the arrival of the object that did. That is the order
+     * this service creates them in when it builds the map itself.
+     */
+    private void mergeShardMaps() {
+        List<LandMark> landmarks = new ArrayList<>();
+        List<long[]> keys = new ArrayList<>();
+        for (FusionShardMapEvent map : shardMaps) {
+            for (int i = 0; i < map.getLandmarks().size(); i++) {
+                landmarks.add(map.getLandmarks().get(i));
+                keys.add(new long[]{map.getSequences()[i], map.getArrivals()[i]});
+            }
+        }
+        Integer[] order = new Integer[landmarks.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingLong(i -> keys.get(i)[0]).thenComparingLong(i -> keys.get(i)[1]));
+        for (int i : order) {
+            fusionSlam.addLandmark(landmarks.get(i));
+        }
+    }
+
+    /**
+     * Processes the objects whose pose is known, consecutive objects tracked at the same time
+     * (as all of an event usually are) together.
+     *
+     * @return the objects whose pose is not known yet, in order.
+     */
+    private List<TrackedObject> processWithPoses(List<TrackedObject> objects) {
+        List<TrackedObject> withoutPose = new ArrayList<>();
+        List<TrackedObject> batch = new ArrayList<>();
+        Pose batchPose = null;
+        for (TrackedObject object : objects) {
+            if (batchPose != null && object.getTime() == batchPose.getTime()) {
+                batch.add(object);
+                continue;
+            }
+            Pose pose = fusionSlam.getPose(object.getTime());
+            if (pose == null) {
+                withoutPose.add(object);
+                continue;
+            }
+            process(batch, batchPose);
+            batch.clear();
+            batchPose = pose;
+            batch.add(object);
+        }
+        process(batch, batchPose);
+        return withoutPose;
+    }
+
+    private void process(List<TrackedObject> objects, Pose pose) {
+        if (!objects.isEmpty()) {
+            statistics.addLandmarks(fusionSlam.processAll(objects, pose));
+        }
+    }
+
+    /**
+     * Writes the output file and terminates; when the map is split into shards, asks them for their maps first,
+     * and does so once the last of them arrives.
+     *
+     * @param error        the error that crashed the system, or null if the run ended normally.
+     * @param faultySensor the name of the sensor that crashed, or null if the run ended normally.
+     */
+    private void finish(String error, String faultySensor) {
+        if (shards == 1) {
+            writeOutput(error, faultySensor);
+            terminate();
+        } else if (!flushing) {
+            // Queued behind everything forwarded so far, so every shard processes all of it first
+            flushing = true;
+            this.error = error;
+            this.faultySensor = faultySensor;
+            sendBroadcast(new FusionShardFlushBroadcast());
+        }
+    }
+
+    private void writeOutput(String error, String faultySensor) {
+        Map<String, Object> output = new LinkedHashMap<>();
+        if (error != null) {
+            output.put("error", error);
+            output.put("faultySensor", faultySensor);
+            output.put("poses", fusionSlam.getPoseList());
+        }
+        output.put("systemRuntime", statistics.getSystemRuntime());
+        output.put("numDetectedObjects", statistics.getNumDetectedObjects());
+        output.put("numTrackedObjects", statistics.getNumTrackedObjects());
+        output.put("numLandmarks", statistics.getNumLandmarks());
+        Map<String, LandMark> landMarks = new LinkedHashMap<>();
+        for (LandMark landmark : fusionSlam.getLandMarkList()) {
+            landMarks.put(landmark.getId(), landmark);
+        }
+        output.put("landMarks", landMarks);
+
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        try (Writer writer = new FileWriter(outputPath)) {
+            gson.toJson(output, writer);
+        } catch (IOException e) {
+            System.err.println("Cannot write output file " + outputPath + ": " + e.getMessage());
+        }
+    }
 }
@@ -1,6 +1,23 @@
 package bgu.spl.mics.application.services;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import bgu.spl.mics.MessageBus;
+import bgu.spl.mics.MessageBusImpl;
 import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.messages.CrashedBroadcast;
+import bgu.spl.mics.application.messages.DetectObjectsEvent;
+import bgu.spl.mics.application.messages.TerminatedBroadcast;
+import bgu.spl.mics.application.messages.TickBroadcast;
+import bgu.spl.mics.application.messages.TrackedObjectsEvent;
+import bgu.spl.mics.application.objects.LiDarDataBase;
+import bgu.spl.mics.application.objects.LiDarWorkerTracker;
+import bgu.spl.mics.application.objects.STATUS;
+import bgu.spl.mics.application.objects.StatisticalFolder;
+import bgu.spl.mics.application.objects.TrackedObject;
 
 /**
  * LiDarWorkerService
@@ -9,4 +26,106 @@ import bgu.spl.mics.MicroService;
  * o Subscribes to TickBroadcast, TerminatedBroadcast, CrashedBroadcast, DetectObjectsEvent.
  */
 public class LiDarWorkerService extends MicroService {
+
+    // --------------------- fields --------------------
+    private final LiDarWorkerTracker tracker;
+    private final LiDarDataBase database;
+    private final StatisticalFolder statistics;
+    private final CountDownLatch ready;
+    private final List<DetectObjectsEvent> pending; // Events whose objects are not due yet
+    private int activeCameras;
+    private int currentTick;
+
+    // --------------------- constructor --------------------
+    /**
+     * @param tracker     the LiDAR worker this service runs.
+     * @param database    the database holding the LiDAR measurements.
+     * @param cameraCount the number of cameras that may send DetectObjectsEvents.
+     * @param statistics  the statistics of the run.
+     * @param ready       counted down once the service has subscribed to its messages.
+     */
+    public LiDarWorkerService(LiDarWorkerTracker tracker, LiDarDataBase database, int cameraCount,
+                              StatisticalFolder statistics, CountDownLatch ready) {
+        this(tracker, database, cameraCount, statistics, ready, MessageBusImpl.getInstance());
+    }
+
+    /**
+     * Same as the constructor above, with the service registered on {@code bus}
+     * instead of the shared {@link MessageBusImpl#getInstance()}.
+     */
+    public LiDarWorkerService(LiDarWorkerTracker tracker, LiDarDataBase database, int cameraCount,
+                              StatisticalFolder statistics, CountDownLatch ready, MessageBus bus) {
+        super("LiDarWorker" + tracker.getId(), bus);
+        this.tracker = tracker;
+        this.database = database;
+        this.statistics = statistics;
+        this.ready = ready;
+        this.pending = new ArrayList<>();
+        this.activeCameras = cameraCount;
+    }
+
+    // --------------------- methods --------------------
+    @Override
+    protected void initialize() {
+        subscribeBroadcast(TickBroadcast.class, tick -> {
+            currentTick = tick.getTick();
+            if (database.hasErrorAt(currentTick)) {
+                tracker.setStatus(STATUS.ERROR);
+                sendBroadcast(new CrashedBroadcast(LiDarWorkerService.class, getName(), "LiDar sensor disconnected"));
+                terminate();
+                return;
+            }
+            sendDueObjects();
+            finishIfDone();
+        });
+        subscribeEvent(DetectObjectsEvent.class, event -> {
+            pending.add(event);
+            sendDueObjects();
+        });
+        subscribeBroadcast(TerminatedBroadcast.class, terminated -> {
+            if (terminated.getSenderType() == TimeService.class) {
+                tracker.setStatus(STATUS.DOWN);
+                terminate();
+            } else if (terminated.getSenderType() == CameraService.class) {
+                activeCameras--;
+                finishIfDone();
+            }
+        });
+        subscribeBroadcast(CrashedBroadcast.class, crashed -> {
+            tracker.setStatus(STATUS.DOWN);
+            terminate();
+        });
+        ready.countDown();
+    }
+
+    /**
+     * Tracks and sends the objects of every pending event whose detection time plus this worker's
+     * frequency has been reached, and completes those events.
+     */
+    private void sendDueObjects() {
+        Iterator<DetectObjectsEvent> it = pending.iterator();
+        while (it.hasNext()) {
+            DetectObjectsEvent event = it.next();
+            if (event.getDetectedObjects().getTime() + tracker.getFrequency() <= currentTick) {
+                List<TrackedObject> tracked = tracker.track(event.getDetectedObjects(), database);
+                if (!tracked.isEmpty()) {
+                    sendEvent(new TrackedObjectsEvent(tracked));
+                    statistics.addTrackedObjects(tracked.size());
+                }
+                complete(event, true);
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Once every camera has terminated no more events will arrive, so the worker stops after its last pending event.
+     */
+    private void finishIfDone() {
+        if (activeCameras <= 0 && pending.isEmpty()) {
+            tracker.setStatus(STATUS.DOWN);
+            sendBroadcast(new TerminatedBroadcast(LiDarWorkerService.class, getName()));
+            terminate();
+        }
+    }
 }
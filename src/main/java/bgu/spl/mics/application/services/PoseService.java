@@ -1,6 +1,17 @@
 package bgu.spl.mics.application.services;
 
+import java.util.concurrent.CountDownLatch;
+
+import bgu.spl.mics.MessageBus;
+import bgu.spl.mics.MessageBusImpl;
 import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.messages.CrashedBroadcast;
+import bgu.spl.mics.application.messages.PoseEvent;
+import bgu.spl.mics.application.messages.TerminatedBroadcast;
+import bgu.spl.mics.application.messages.TickBroadcast;
+import bgu.spl.mics.application.objects.GPSIMU;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.objects.STATUS;
 
 /**
  * PoseService
@@ -14,4 +25,54 @@ import bgu.spl.mics.MicroService;
  */
 public class PoseService extends MicroService {
 
+    // --------------------- fields --------------------
+    private final GPSIMU gpsimu;
+    private final CountDownLatch ready;
+
+    // --------------------- constructor --------------------
+    /**
+     * @param gpsimu the GPS/IMU holding the robot's recorded poses.
+     * @param ready  counted down once the service has subscribed to its messages.
+     */
+    public PoseService(GPSIMU gpsimu, CountDownLatch ready) {
+        this(gpsimu, ready, MessageBusImpl.getInstance());
+    }
+
+    /**
+     * Same as the constructor above, with the service registered on {@code bus}
+     * instead of the shared {@link MessageBusImpl#getInstance()}.
+     */
+    public PoseService(GPSIMU gpsimu, CountDownLatch ready, MessageBus bus) {
+        super("PoseService", bus);
+        this.gpsimu = gpsimu;
+        this.ready = ready;
+    }
+
+    // --------------------- methods --------------------
+    @Override
+    protected void initialize() {
+        subscribeBroadcast(TickBroadcast.class, tick -> {
+            gpsimu.setCurrentTick(tick.getTick());
+            Pose pose = gpsimu.getPose(tick.getTick());
+            if (pose != null) {
+                sendEvent(new PoseEvent(pose));
+            }
+            if (!gpsimu.hasPosesAfter(tick.getTick())) {
+                gpsimu.setStatus(STATUS.DOWN);
+                sendBroadcast(new TerminatedBroadcast(PoseService.class, getName()));
+                terminate();
+            }
+        });
+        subscribeBroadcast(TerminatedBroadcast.class, terminated -> {
+            if (terminated.getSenderType() == TimeService.class) {
+                gpsimu.setStatus(STATUS.DOWN);
+                terminate();
+            }
+        });
+        subscribeBroadcast(CrashedBroadcast.class, crashed -> {
+            gpsimu.setStatus(STATUS.DOWN);
+            terminate();
+        });
+        ready.countDown();
+    }
 }
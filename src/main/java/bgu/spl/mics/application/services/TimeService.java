@@ -1,6 +1,15 @@
 package bgu.spl.mics.application.services;
 
+import java.util.concurrent.CountDownLatch;
+
+import bgu.spl.mics.Lane;
+import bgu.spl.mics.MessageBus;
+import bgu.spl.mics.MessageBusImpl;
 import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.messages.CrashedBroadcast;
+import bgu.spl.mics.application.messages.TerminatedBroadcast;
+import bgu.spl.mics.application.messages.TickBroadcast;
+import bgu.spl.mics.application.objects.StatisticalFolder;
 
 /**
  * TimeService
@@ -17,10 +26,71 @@ import bgu.spl.mics.MicroService;
  */
 public class TimeService extends MicroService {
 
+    // --------------------- fields --------------------
+    private final long tickTime;
+    private final int duration;
+    private final StatisticalFolder statistics;
+    private final CountDownLatch ready;
+
     // --------------------- constructor --------------------
+    /**
+     * @param tickTime   the duration of a tick in milliseconds.
+     * @param duration   the number of ticks before the system terminates.
+     * @param statistics the statistics of the run.
+     * @param ready      the first tick is sent only after it reaches zero, so that every
+     *                   service has subscribed before time starts.
+     */
+    public TimeService(long tickTime, int duration, StatisticalFolder statistics, CountDownLatch ready) {
+        this(tickTime, duration, statistics, ready, MessageBusImpl.getInstance());
+    }
+
+    /**
+     * Same as the constructor above, with the service registered on {@code bus}
+     * instead of the shared {@link MessageBusImpl#getInstance()}.
+     */
+    public TimeService(long tickTime, int duration, StatisticalFolder statistics, CountDownLatch ready,
+                       MessageBus bus) {
+        super("TimeService", bus);
+        this.tickTime = tickTime;
+        this.duration = duration;
+        this.statistics = statistics;
+        this.ready = ready;
+    }
 
     // --------------------- methods --------------------
+    @Override
     protected void initialize() {
-
+        // The service receives its own ticks and sends the next one from the callback,
+        // so termination messages are handled between ticks.
+        subscribeBroadcast(TickBroadcast.class, tick -> {
+            statistics.incrementSystemRuntime();
+            if (tick.getTick() >= duration) {
+                sendBroadcast(new TerminatedBroadcast(TimeService.class, getName(), Lane.CONTROL));
+                terminate();
+                return;
+            }
+            try {
+                Thread.sleep(tickTime);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                terminate();
+                return;
+            }
+            sendBroadcast(new TickBroadcast(tick.getTick() + 1));
+        });
+        subscribeBroadcast(TerminatedBroadcast.class, terminated -> {
+            if (terminated.getSenderType() == FusionSlamService.class) {
+                terminate();
+            }
+        });
+        subscribeBroadcast(CrashedBroadcast.class, crashed -> terminate());
+        try {
+            ready.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            terminate();
+            return;
+        }
+        sendBroadcast(new TickBroadcast(1));
     }
 }
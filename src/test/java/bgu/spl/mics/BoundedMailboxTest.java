@@ -0,0 +1,36 @@
+package bgu.spl.mics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BoundedMailboxTest {
+
+    private static final Message MESSAGE = new Message() {
+    };
+
+    @Test
+    public void wakeMarkerIsNeverHandedOut() throws InterruptedException {
+        BoundedMailbox mailbox = new BoundedMailbox(4);
+        mailbox.offer(MESSAGE);
+        mailbox.wake();
+        List<Message> sink = new ArrayList<>();
+        assertEquals(1, mailbox.poll(sink, 8));
+        assertSame(MESSAGE, sink.get(0));
+    }
+
+    @Test(timeout = 5000)
+    public void wakeWhileFullDoesNotDisableLaterWakes() throws InterruptedException {
+        BoundedMailbox mailbox = new BoundedMailbox(1);
+        mailbox.offer(MESSAGE);
+        mailbox.wake(); // No room for the marker
+        assertSame(MESSAGE, mailbox.take());
+        mailbox.wake();
+        assertNull(mailbox.take()); // Would block forever if the first wake() had left its flag set
+    }
+}
@@ -0,0 +1,105 @@
+package bgu.spl.mics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClockChannelTest {
+
+    private static final class Tick implements ClockBroadcast {
+        private final long number;
+
+        private Tick(long number) {
+            this.number = number;
+        }
+    }
+
+    private static final class Idle extends MicroService {
+        private Idle(String name) {
+            super(name, new MessageBusImpl());
+        }
+
+        @Override
+        protected void initialize() {
+        }
+    }
+
+    private ClockChannel channel;
+
+    @Before
+    public void create() {
+        channel = new ClockChannel();
+    }
+
+    @Test
+    public void subscribingStartsAfterTheLatestBroadcast() {
+        channel.publish(new Tick(1), 1);
+        MicroService m = new Idle("m");
+        ClockChannel.Cursor cursor = channel.subscribe(m);
+        assertEquals(1, cursor.seen());
+        assertSame(cursor, channel.subscribe(m));
+        assertEquals(1, channel.cursors().size());
+    }
+
+    @Test
+    public void aSubscriberFarBehindStillReadsEveryBroadcastInOrder() {
+        ClockChannel.Cursor current = channel.subscribe(new Idle("current"));
+        ClockChannel.Cursor behind = channel.subscribe(new Idle("behind"));
+        int published = ClockChannel.INITIAL_HISTORY * 10 + 3;
+        for (long n = 1; n <= published; n++) {
+            channel.publish(new Tick(n), n);
+            assertEquals(n, read(current));
+        }
+        for (long n = 1; n <= published; n++) {
+            assertEquals(n, read(behind));
+        }
+    }
+
+    @Test
+    public void unsubscribedCursorsDoNotHoldBroadcasts() {
+        MicroService gone = new Idle("gone");
+        channel.subscribe(gone);
+        channel.unsubscribe(gone);
+        ClockChannel.Cursor cursor = channel.subscribe(new Idle("m"));
+        for (long n = 1; n <= ClockChannel.INITIAL_HISTORY * 4; n++) {
+            channel.publish(new Tick(n), n);
+            assertEquals(n, read(cursor));
+        }
+        assertEquals(1, channel.cursors().size());
+    }
+
+    @Test
+    public void aSlowReaderSeesEveryBroadcastPublishedConcurrently() throws InterruptedException {
+        ClockChannel.Cursor cursor = channel.subscribe(new Idle("slow"));
+        int published = 50_000;
+        Thread publisher = new Thread(() -> {
+            for (long n = 1; n <= published; n++) {
+                channel.publish(new Tick(n), n);
+            }
+        });
+        publisher.start();
+        for (long n = 1; n <= published; n++) {
+            while (cursor.seen() == channel.sequence()) {
+                Thread.onSpinWait();
+            }
+            if (n % 1000 == 0) {
+                Thread.sleep(1); // Fall far behind the publisher
+            }
+            assertEquals(n, read(cursor));
+        }
+        publisher.join();
+    }
+
+    /**
+     * Reads the next broadcast the way {@link MicroService} does.
+     */
+    private long read(ClockChannel.Cursor cursor) {
+        long next = cursor.seen() + 1;
+        Tick tick = (Tick) channel.get(next);
+        assertEquals(tick.number, channel.clock(next)); // Published with its own number as the clock
+        cursor.read(next);
+        return tick.number;
+    }
+}
@@ -0,0 +1,60 @@
+package bgu.spl.mics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class FutureTest {
+
+    @Test
+    public void getReturnsTheResolvedResult() {
+        Future<String> future = new Future<>();
+        future.resolve("done");
+        assertTrue(future.isDone());
+        assertEquals("done", future.get());
+    }
+
+    @Test(timeout = 5000)
+    public void getReturnsWhenTheWaitingThreadIsInterrupted() throws InterruptedException {
+        Future<String> future = new Future<>();
+        CountDownLatch returned = new CountDownLatch(1);
+        boolean[] interrupted = new boolean[1];
+        Thread waiter = new Thread(() -> {
+            future.get();
+            interrupted[0] = Thread.currentThread().isInterrupted();
+            returned.countDown();
+        });
+        waiter.start();
+        Thread.sleep(50); // Let the waiter block
+        waiter.interrupt();
+        assertTrue(returned.await(5, TimeUnit.SECONDS));
+        assertTrue(interrupted[0]);
+        assertFalse(future.isDone());
+    }
+
+    @Test
+    public void ofFollowsANormalCompletion() {
+        CompletableFuture<Integer> stage = new CompletableFuture<>();
+        Future<Integer> future = Future.of(stage);
+        assertFalse(future.isDone());
+        stage.complete(7);
+        assertEquals(Integer.valueOf(7), future.get());
+    }
+
+    @Test
+    public void ofFailsWhenTheStageFails() {
+        CompletableFuture<Integer> stage = new CompletableFuture<>();
+        Future<Integer> future = Future.of(stage);
+        stage.completeExceptionally(new IllegalStateException("broken"));
+        assertTrue(future.isDone());
+        assertTrue(future.isFailed());
+        assertNull(future.get());
+    }
+}
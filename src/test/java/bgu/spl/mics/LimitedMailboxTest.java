@@ -0,0 +1,234 @@
+package bgu.spl.mics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class LimitedMailboxTest {
+
+    private static final class Numbered implements Broadcast, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int number;
+
+        private Numbered(int number) {
+            this.number = number;
+        }
+    }
+
+    private static final class Job implements Event<String>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int number;
+
+        private Job(int number) {
+            this.number = number;
+        }
+    }
+
+    /** Not serializable, so it can never be spilled. */
+    private static final class Plain implements Broadcast {
+        private final int number;
+
+        private Plain(int number) {
+            this.number = number;
+        }
+    }
+
+    private final OverflowCounters counters = new OverflowCounters();
+
+    @Test
+    public void rejectRefusesMessagesWhileFull() throws InterruptedException {
+        LimitedMailbox mailbox = new LimitedMailbox(1, OverflowPolicy.REJECT, counters);
+        assertTrue(mailbox.offer(new Numbered(1)));
+        assertFalse(mailbox.offer(new Numbered(2)));
+        assertEquals(1, counters.getRejected());
+        assertEquals(1, numberOf(mailbox.take()));
+        assertTrue(mailbox.offer(new Numbered(3)));
+    }
+
+    @Test
+    public void dropOldestEvictsBroadcastsButNeverEvents() {
+        LimitedMailbox mailbox = new LimitedMailbox(2, OverflowPolicy.DROP_OLDEST, counters);
+        mailbox.offer(delivery(1));
+        mailbox.offer(new Numbered(2));
+        assertTrue(mailbox.offer(new Numbered(3))); // Evicts 2
+        assertFalse(mailbox.offer(delivery(4)));    // Events are rejected rather than evicting
+        assertEquals(1, counters.getDropped());
+        assertEquals(1, counters.getRejected());
+        assertEquals(List.of(1, 3), numbersOf(drain(mailbox)));
+
+        mailbox.offer(delivery(5));
+        mailbox.offer(delivery(6));
+        assertFalse(mailbox.offer(new Numbered(7))); // Only events to evict
+        assertEquals(2, counters.getDropped());
+    }
+
+    @Test(timeout = 5000)
+    public void blockWaitsForRoom() throws InterruptedException {
+        LimitedMailbox mailbox = new LimitedMailbox(1, OverflowPolicy.BLOCK, counters);
+        mailbox.offer(new Numbered(1));
+        Thread sender = new Thread(() -> mailbox.offer(new Numbered(2)));
+        sender.start();
+        while (counters.getBlocked() == 0) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, mailbox.size());
+        assertEquals(1, numberOf(mailbox.take()));
+        sender.join();
+        assertEquals(2, numberOf(mailbox.take()));
+    }
+
+    @Test
+    public void spilledMessagesComeBackInOrderWithTheirFutures() throws InterruptedException {
+        LimitedMailbox mailbox = new LimitedMailbox(2, OverflowPolicy.SPILL_TO_DISK, counters);
+        List<EventDelivery> sent = new ArrayList<>();
+        for (int n = 1; n <= 10; n++) {
+            if (n % 2 == 0) {
+                EventDelivery delivery = delivery(n);
+                sent.add(delivery);
+                assertTrue(mailbox.offer(delivery));
+            } else {
+                assertTrue(mailbox.offer(new Numbered(n)));
+            }
+        }
+        assertEquals(8, counters.getSpilled());
+        assertEquals(10, mailbox.size());
+
+        List<Message> received = new ArrayList<>();
+        for (int n = 1; n <= 10; n++) {
+            received.add(mailbox.take());
+        }
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), numbersOf(received));
+        for (int i = 1; i < 10; i += 2) {
+            EventDelivery delivery = (EventDelivery) received.get(i);
+            EventDelivery original = sent.get(i / 2);
+            assertSame(original.future, delivery.future);
+            assertEquals(original.sentAt, delivery.sentAt);
+            assertEquals(original.clock, delivery.clock);
+            if (i > 1) {
+                assertNotSame(original.event, delivery.event); // Read back from the file
+            }
+        }
+        assertEquals(0, mailbox.size());
+    }
+
+    @Test
+    public void spilledBroadcastsKeepTheirClock() throws InterruptedException {
+        LimitedMailbox mailbox = new LimitedMailbox(1, OverflowPolicy.SPILL_TO_DISK, counters);
+        mailbox.offer(new BroadcastDelivery(new Numbered(1), 5));
+        mailbox.offer(new BroadcastDelivery(new Numbered(2), 7));
+        assertEquals(1, counters.getSpilled());
+        assertEquals(5, ((BroadcastDelivery) mailbox.take()).clock);
+        BroadcastDelivery spilled = (BroadcastDelivery) mailbox.take();
+        assertEquals(7, spilled.clock);
+        assertEquals(2, numberOf(spilled));
+    }
+
+    @Test
+    public void unserializableMessagesWaitBehindTheSpill() {
+        LimitedMailbox mailbox = new LimitedMailbox(1, OverflowPolicy.SPILL_TO_DISK, counters);
+        mailbox.offer(new Numbered(1));
+        mailbox.offer(new Numbered(2)); // Starts the spill
+        assertTrue(mailbox.offer(new Plain(3)));
+        mailbox.offer(new Numbered(4));
+        assertEquals(2, counters.getSpilled());
+        assertEquals(0, counters.getBlocked());
+        assertEquals(List.of(1, 2, 3, 4), numbersOf(drain(mailbox)));
+    }
+
+    @Test(timeout = 5000)
+    public void unserializableMessagesBlockWhileNothingIsSpilled() throws InterruptedException {
+        LimitedMailbox mailbox = new LimitedMailbox(1, OverflowPolicy.SPILL_TO_DISK, counters);
+        mailbox.offer(new Numbered(1));
+        Thread sender = new Thread(() -> mailbox.offer(new Plain(2)));
+        sender.start();
+        while (counters.getBlocked() == 0) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, numberOf(mailbox.take()));
+        sender.join();
+        assertEquals(2, numberOf(mailbox.take()));
+        assertEquals(0, counters.getSpilled());
+    }
+
+    @Test
+    public void closeDeletesTheSpillFile() {
+        Set<String> before = spillFiles();
+        LimitedMailbox mailbox = new LimitedMailbox(1, OverflowPolicy.SPILL_TO_DISK, counters);
+        mailbox.offer(new Numbered(1));
+        mailbox.offer(new Numbered(2));
+        Set<String> created = spillFiles();
+        created.removeAll(before);
+        assertEquals(1, created.size());
+
+        mailbox.close();
+        assertTrue(mailbox.offer(new Numbered(3))); // Dropped
+        assertEquals(0, mailbox.size());
+        Set<String> left = spillFiles();
+        left.retainAll(created);
+        assertTrue(left.isEmpty());
+    }
+
+    @Test(timeout = 5000)
+    public void closeReleasesBlockedSenders() throws InterruptedException {
+        LimitedMailbox mailbox = new LimitedMailbox(1, OverflowPolicy.BLOCK, counters);
+        mailbox.offer(new Numbered(1));
+        Thread sender = new Thread(() -> mailbox.offer(new Numbered(2)));
+        sender.start();
+        while (counters.getBlocked() == 0) {
+            Thread.sleep(1);
+        }
+        mailbox.close();
+        sender.join();
+        assertEquals(0, mailbox.size());
+    }
+
+    private static Set<String> spillFiles() {
+        String[] names = new File(System.getProperty("java.io.tmpdir")).list((dir, name) -> name.startsWith("mailbox-") && name.endsWith(".spill"));
+        return new HashSet<>(Arrays.asList(names));
+    }
+
+    private static EventDelivery delivery(int number) {
+        return new EventDelivery(new Job(number), new Future<String>(), number * 100L, number);
+    }
+
+    /**
+     * Takes everything out of {@code mailbox}, refilling from the spill file as {@link MicroService} would.
+     */
+    private static List<Message> drain(LimitedMailbox mailbox) {
+        List<Message> sink = new ArrayList<>();
+        while (mailbox.poll(sink, 1) > 0) {
+            // One at a time, so each poll reads the next spilled message back
+        }
+        return sink;
+    }
+
+    private static List<Integer> numbersOf(List<Message> messages) {
+        List<Integer> numbers = new ArrayList<>();
+        for (Message m : messages) {
+            numbers.add(numberOf(m));
+        }
+        return numbers;
+    }
+
+    private static int numberOf(Message m) {
+        Message sent = EventDelivery.sent(m);
+        if (sent instanceof Job) {
+            return ((Job) sent).number;
+        }
+        return sent instanceof Plain ? ((Plain) sent).number : ((Numbered) sent).number;
+    }
+}
@@ -0,0 +1,133 @@
+package bgu.spl.mics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import bgu.spl.mics.application.messages.TickBroadcast;
+
+public class MessageBusImplTest {
+
+    /** Every instance is equal to every other, so only identity tells two apart. */
+    private static final class Request implements Event<String> {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Request;
+        }
+
+        @Override
+        public int hashCode() {
+            return 1;
+        }
+    }
+
+    private static final class Ping implements Broadcast {
+    }
+
+    private static final class Idle extends MicroService {
+        private Idle(String name, MessageBusImpl bus) {
+            super(name, bus);
+        }
+
+        @Override
+        protected void initialize() {
+        }
+    }
+
+    private MessageBusImpl bus;
+    private MicroService handler;
+
+    @Before
+    public void register() {
+        bus = new MessageBusImpl();
+        handler = new Idle("handler", bus);
+        bus.register(handler);
+        bus.subscribeEvent(Request.class, handler);
+    }
+
+    @Test
+    public void completeFromTheTestThreadResolvesTheFuture() throws InterruptedException {
+        Request request = new Request();
+        Future<String> future = bus.sendEvent(request);
+        assertSame(request, bus.awaitMessage(handler));
+        bus.complete(request, "done");
+        assertTrue(future.isDone());
+        assertEquals("done", future.get());
+    }
+
+    @Test
+    public void completeFromAHelperThreadResolvesTheFuture() throws InterruptedException {
+        Request request = new Request();
+        Future<String> future = bus.sendEvent(request);
+        bus.awaitMessage(handler);
+        Thread helper = new Thread(() -> bus.complete(request, "helped"));
+        helper.start();
+        helper.join();
+        assertEquals("helped", future.get());
+    }
+
+    @Test
+    public void completeMatchesEventsByIdentity() throws InterruptedException {
+        Request first = new Request();
+        Request second = new Request();
+        Future<String> firstFuture = bus.sendEvent(first);
+        Future<String> secondFuture = bus.sendEvent(second);
+        bus.awaitMessage(handler);
+        bus.awaitMessage(handler);
+        bus.complete(second, "second");
+        assertFalse(firstFuture.isDone());
+        assertEquals("second", secondFuture.get());
+        bus.complete(first, "first");
+        assertEquals("first", firstFuture.get());
+    }
+
+    @Test
+    public void completingTwiceKeepsTheFirstResult() throws InterruptedException {
+        Request request = new Request();
+        Future<String> future = bus.sendEvent(request);
+        bus.awaitMessage(handler);
+        bus.complete(request, "first");
+        bus.complete(request, "second");
+        assertEquals("first", future.get());
+    }
+
+    @Test
+    public void unregisterForgetsTheEventsItDidNotComplete() throws InterruptedException {
+        Request request = new Request();
+        Future<String> future = bus.sendEvent(request);
+        bus.awaitMessage(handler);
+        bus.unregister(handler);
+        bus.complete(request, "late");
+        assertFalse(future.isDone());
+    }
+
+    @Test(timeout = 5000)
+    public void awaitMessageReturnsClockBroadcasts() throws InterruptedException {
+        bus.subscribeBroadcast(TickBroadcast.class, handler);
+        TickBroadcast first = new TickBroadcast(1);
+        TickBroadcast second = new TickBroadcast(2);
+        bus.sendBroadcast(first);
+        bus.sendBroadcast(second); // A single wakeup may cover both
+        assertSame(first, bus.awaitMessage(handler));
+        assertSame(second, bus.awaitMessage(handler));
+    }
+
+    @Test(timeout = 5000)
+    public void awaitMessageKeepsClockBroadcastsInTheirTurn() throws InterruptedException {
+        bus.subscribeBroadcast(TickBroadcast.class, handler);
+        bus.subscribeBroadcast(Ping.class, handler);
+        Ping before = new Ping();
+        TickBroadcast tick = new TickBroadcast(1);
+        Ping after = new Ping();
+        bus.sendBroadcast(before);
+        bus.sendBroadcast(tick);
+        bus.sendBroadcast(after);
+        assertSame(before, bus.awaitMessage(handler));
+        assertSame(tick, bus.awaitMessage(handler));
+        assertSame(after, bus.awaitMessage(handler));
+    }
+}
@@ -0,0 +1,152 @@
+package bgu.spl.mics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class MicroServiceTest {
+
+    private static final class Tick implements ClockBroadcast {
+        private final int number;
+
+        private Tick(int number) {
+            this.number = number;
+        }
+    }
+
+    private static final class Ping implements Broadcast {
+        private final int number;
+
+        private Ping(int number) {
+            this.number = number;
+        }
+    }
+
+    private static final class Stop implements Broadcast {
+    }
+
+    /**
+     * Records the broadcasts it handles, as "t1" for Tick 1 and "p1" for Ping 1.
+     */
+    private static final class Recorder extends MicroService {
+        private final List<String> handled = new ArrayList<>();
+        private final CountDownLatch subscribed = new CountDownLatch(1);
+
+        private Recorder(int batchSize, MessageBus bus) {
+            super("recorder", batchSize, bus);
+        }
+
+        @Override
+        protected void initialize() {
+            subscribeBroadcast(Tick.class, tick -> handled.add("t" + tick.number));
+            subscribeBroadcast(Ping.class, ping -> handled.add("p" + ping.number));
+            subscribeBroadcast(Stop.class, stop -> terminate());
+            subscribed.countDown();
+        }
+    }
+
+    /**
+     * A bus that is not a {@link MessageBusImpl}, so services only use it through {@link MessageBus}.
+     */
+    private static final class ForwardingBus implements MessageBus {
+        private final MessageBus bus;
+
+        private ForwardingBus(MessageBus bus) {
+            this.bus = bus;
+        }
+
+        @Override
+        public <T> void subscribeEvent(Class<? extends Event<T>> type, MicroService m) {
+            bus.subscribeEvent(type, m);
+        }
+
+        @Override
+        public void subscribeBroadcast(Class<? extends Broadcast> type, MicroService m) {
+            bus.subscribeBroadcast(type, m);
+        }
+
+        @Override
+        public <T> void complete(Event<T> e, T result) {
+            bus.complete(e, result);
+        }
+
+        @Override
+        public void sendBroadcast(Broadcast b) {
+            bus.sendBroadcast(b);
+        }
+
+        @Override
+        public <T> Future<T> sendEvent(Event<T> e) {
+            return bus.sendEvent(e);
+        }
+
+        @Override
+        public void register(MicroService m) {
+            bus.register(m);
+        }
+
+        @Override
+        public void unregister(MicroService m) {
+            bus.unregister(m);
+        }
+
+        @Override
+        public Message awaitMessage(MicroService m) throws InterruptedException {
+            return bus.awaitMessage(m);
+        }
+    }
+
+    private final MessageBusImpl bus = new MessageBusImpl();
+
+    @Test(timeout = 5000)
+    public void clockBroadcastsAreHandledInTheOrderTheyWerePublished() throws InterruptedException {
+        assertOrder(new Recorder(8, bus));
+    }
+
+    @Test(timeout = 5000)
+    public void anyMessageBusCanRunAService() throws InterruptedException {
+        assertOrder(new Recorder(8, new ForwardingBus(bus)));
+    }
+
+    private void assertOrder(Recorder recorder) throws InterruptedException {
+        Thread thread = new Thread(recorder);
+        thread.start();
+        recorder.subscribed.await();
+        bus.sendBroadcast(new Ping(1));
+        bus.sendBroadcast(new Tick(1));
+        bus.sendBroadcast(new Ping(2));
+        bus.sendBroadcast(new Ping(3));
+        bus.sendBroadcast(new Tick(2));
+        bus.sendBroadcast(new Tick(3));
+        bus.sendBroadcast(new Ping(4));
+        bus.sendBroadcast(new Stop());
+        thread.join();
+        assertEquals(List.of("p1", "t1", "p2", "p3", "t2", "t3", "p4"), recorder.handled);
+    }
+
+    @Test
+    public void anActorTurnRunsAtMostItsBatchOfCallbacks() {
+        Recorder recorder = new Recorder(1, bus);
+        recorder.startActor(() -> { });
+        for (int n = 1; n <= 3; n++) {
+            bus.sendBroadcast(new Tick(n));
+        }
+        bus.sendBroadcast(new Ping(1));
+        bus.sendBroadcast(new Tick(4));
+
+        List<Message> batch = new ArrayList<>();
+        recorder.runActorBatch(batch, 2);
+        assertEquals(List.of("t1", "t2"), recorder.handled);
+        assertEquals(1, batch.size()); // Ping 1, taken and kept for the next turn
+        recorder.runActorBatch(batch, 2);
+        assertEquals(List.of("t1", "t2", "t3", "p1"), recorder.handled);
+        recorder.runActorBatch(batch, 2);
+        assertEquals(List.of("t1", "t2", "t3", "p1", "t4"), recorder.handled);
+        assertFalse(recorder.hasMessages());
+    }
+}
@@ -0,0 +1,150 @@
+package bgu.spl.mics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class MpscMailboxTest {
+
+    private static final class Numbered implements Message {
+        private final int producer;
+        private final int number;
+
+        private Numbered(int producer, int number) {
+            this.producer = producer;
+            this.number = number;
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void takesMessagesInOfferOrder() throws InterruptedException {
+        MpscMailbox mailbox = new MpscMailbox();
+        Message first = new Numbered(0, 0);
+        Message second = new Numbered(0, 1);
+        mailbox.offer(first);
+        mailbox.offer(second);
+        assertEquals(2, mailbox.size());
+        assertSame(first, mailbox.take());
+        assertSame(second, mailbox.take());
+        assertEquals(0, mailbox.size());
+    }
+
+    @Test
+    public void pollDoesNotWaitOnAnEmptyMailbox() {
+        MpscMailbox mailbox = new MpscMailbox();
+        List<Message> sink = new ArrayList<>();
+        assertEquals(0, mailbox.poll(sink, 8));
+        assertTrue(sink.isEmpty());
+    }
+
+    @Test(timeout = 5000)
+    public void drainToStopsAtMax() throws InterruptedException {
+        MpscMailbox mailbox = new MpscMailbox();
+        for (int i = 0; i < 5; i++) {
+            mailbox.offer(new Numbered(0, i));
+        }
+        List<Message> sink = new ArrayList<>();
+        assertEquals(3, mailbox.drainTo(sink, 3));
+        assertEquals(2, mailbox.size());
+        assertEquals(2, ((Numbered) sink.get(2)).number);
+    }
+
+    @Test(timeout = 5000)
+    public void wakeReturnsFromAWaitingTake() throws InterruptedException {
+        MpscMailbox mailbox = new MpscMailbox();
+        CountDownLatch returned = new CountDownLatch(1);
+        Message[] taken = new Message[1];
+        Thread consumer = new Thread(() -> {
+            try {
+                taken[0] = mailbox.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            returned.countDown();
+        });
+        consumer.start();
+        Thread.sleep(50); // Let the consumer park
+        mailbox.wake();
+        assertTrue(returned.await(5, TimeUnit.SECONDS));
+        assertNull(taken[0]);
+    }
+
+    @Test(timeout = 5000)
+    public void wakeBeforeTakeIsNotLost() throws InterruptedException {
+        MpscMailbox mailbox = new MpscMailbox();
+        mailbox.wake();
+        assertEquals(0, mailbox.drainTo(new ArrayList<>(), 8));
+    }
+
+    @Test(timeout = 5000)
+    public void offerWakesAParkedConsumer() throws InterruptedException {
+        MpscMailbox mailbox = new MpscMailbox();
+        Message message = new Numbered(0, 0);
+        Message[] taken = new Message[1];
+        Thread consumer = new Thread(() -> {
+            try {
+                taken[0] = mailbox.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        Thread.sleep(50);
+        mailbox.offer(message);
+        consumer.join();
+        assertSame(message, taken[0]);
+    }
+
+    @Test(timeout = 30000)
+    public void concurrentProducersLoseNothingAndKeepTheirOwnOrder() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 50_000;
+        MpscMailbox mailbox = new MpscMailbox();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    mailbox.offer(new Numbered(producer, i));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+
+        int[] next = new int[producers];
+        List<Message> batch = new ArrayList<>();
+        int received = 0;
+        while (received < producers * perProducer) {
+            batch.clear();
+            received += mailbox.drainTo(batch, 256);
+            for (Message message : batch) {
+                Numbered numbered = (Numbered) message;
+                assertEquals(next[numbered.producer]++, numbered.number);
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int p = 0; p < producers; p++) {
+            assertEquals(perProducer, next[p]);
+        }
+        assertEquals(0, mailbox.size());
+        assertEquals(0, mailbox.poll(batch, 1));
+    }
+}
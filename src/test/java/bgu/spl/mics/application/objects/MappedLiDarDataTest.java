@@ -0,0 +1,111 @@
+package bgu.spl.mics.application.objects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedLiDarDataTest {
+
+    private final List<StampedCloudPoints> measurements = new ArrayList<>();
+    private File file;
+
+    @Before
+    public void write() throws IOException {
+        measurements.add(new StampedCloudPoints("Wall_1", 2, points(1, 3)));
+        measurements.add(new StampedCloudPoints("Chair_Base_1", 2, points(2, 5)));
+        measurements.add(new StampedCloudPoints("ERROR", 4, points(3, 0)));
+        measurements.add(new StampedCloudPoints("Wall_1", 1, points(4, 1)));
+        measurements.add(new StampedCloudPoints("Door", 7, points(5, 7)));
+        measurements.add(new StampedCloudPoints("Wall_1", 2, points(6, 2))); // Measured twice: the first is found
+        file = File.createTempFile("lidar-", ".bin");
+        file.deleteOnExit();
+        MappedLiDarData.write(measurements, file);
+    }
+
+    @Test
+    public void findsEveryMeasurement() throws IOException {
+        assertContents(MappedLiDarData.open(file));
+    }
+
+    @Test
+    public void findsMeasurementsAcrossSegments() throws IOException {
+        assertContents(MappedLiDarData.open(file, 5)); // 32 byte segments: most point runs straddle two of them
+    }
+
+    @Test
+    public void isBinaryOnlyForThisFormat() throws IOException {
+        assertTrue(MappedLiDarData.isBinary(file));
+        File json = File.createTempFile("lidar-", ".json");
+        json.deleteOnExit();
+        Files.writeString(json.toPath(), "[]");
+        assertFalse(MappedLiDarData.isBinary(json));
+    }
+
+    @Test
+    public void rejectsATruncatedFile() throws IOException {
+        try (RandomAccessFile data = new RandomAccessFile(file, "rw")) {
+            data.setLength(data.length() - 8);
+        }
+        try {
+            MappedLiDarData.open(file);
+            fail("Opened a truncated file");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    private void assertContents(MappedLiDarData data) {
+        assertEquals(7, data.getLastTime());
+        assertEquals(measurements.size(), data.asList().size());
+        assertSamePoints(measurements.get(0), data.find(2, "Wall_1"));
+        assertSamePoints(measurements.get(1), data.find(2, "Chair_Base_1"));
+        assertSamePoints(measurements.get(2), data.find(4, "ERROR"));
+        assertSamePoints(measurements.get(3), data.find(1, "Wall_1"));
+        assertSamePoints(measurements.get(4), data.find(7, "Door"));
+        assertNull(data.find(3, "Wall_1"));
+        assertNull(data.find(2, "Door"));
+        assertNull(data.find(2, "Unknown"));
+
+        int[] times = new int[data.asList().size()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = data.asList().get(i).getTime();
+        }
+        assertEquals("[1, 2, 2, 2, 4, 7]", Arrays.toString(times));
+    }
+
+    private static void assertSamePoints(StampedCloudPoints expected, StampedCloudPoints actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getTime(), actual.getTime());
+        PackedPoints want = expected.getCloudPoints();
+        PackedPoints got = actual.getCloudPoints();
+        assertEquals(want.size(), got.size());
+        for (int i = 0; i < want.size(); i++) {
+            assertEquals(want.getX(i), got.getX(i), 0);
+            assertEquals(want.getY(i), got.getY(i), 0);
+        }
+    }
+
+    /**
+     * @return {@code count} distinct points, from {@code seed}.
+     */
+    private static PackedPoints points(int seed, int count) {
+        double[] xy = new double[2 * count];
+        for (int i = 0; i < xy.length; i++) {
+            xy[i] = seed * 100 + i * 0.25;
+        }
+        return new PackedPoints(xy);
+    }
+}
@@ -0,0 +1,128 @@
+package bgu.spl.mics.application.objects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class PoseHistoryTest {
+
+    @Test
+    public void keepsEveryPoseWhenUnbounded() {
+        PoseHistory history = new PoseHistory();
+        for (int time = 1; time <= 1000; time++) {
+            history.add(new Pose(time, -time, 0, time));
+        }
+        assertEquals(0, history.getRetention());
+        assertEquals(1000, history.getLatestTime());
+        assertPose(1, -1, 0, 1, history.get(1));
+        assertPose(1000, -1000, 0, 1000, history.get(1000));
+        assertEquals(1000, history.toList().size());
+    }
+
+    @Test
+    public void keepsTheFirstPoseOfATick() {
+        PoseHistory history = new PoseHistory();
+        history.add(new Pose(1, 1, 10, 3));
+        history.add(new Pose(2, 2, 20, 3));
+        assertPose(1, 1, 10, 3, history.get(3));
+    }
+
+    @Test
+    public void retainsOnlyTheLastTicks() {
+        PoseHistory history = new PoseHistory(3);
+        for (int time = 1; time <= 10; time++) {
+            history.add(new Pose(time, 0, 0, time));
+        }
+        assertNull(history.get(7));
+        assertPose(8, 0, 0, 8, history.get(8));
+        assertPose(10, 0, 0, 10, history.get(10));
+        assertEquals(3, history.toList().size());
+
+        history.add(new Pose(-1, 0, 0, 6)); // Older than the retained ticks
+        assertNull(history.get(6));
+        assertEquals(8, history.toList().get(0).getTime());
+    }
+
+    @Test
+    public void retentionDoesNotOverwriteKeptPoses() {
+        PoseHistory history = new PoseHistory(5); // A ring of 8 slots
+        for (int time = 0; time <= 20; time += 2) {
+            history.add(new Pose(time, 0, 0, time));
+        }
+        assertNull(history.get(15)); // Never added
+        assertNull(history.get(14)); // Too old
+        assertPose(16, 0, 0, 16, history.get(16));
+        assertPose(20, 0, 0, 20, history.get(20));
+    }
+
+    @Test
+    public void interpolatesBetweenTheNearestPoses() {
+        PoseHistory history = new PoseHistory();
+        history.add(new Pose(0, 0, 0, 2));
+        history.add(new Pose(4, -8, 40, 6));
+        assertPose(1, -2, 10, 3, history.interpolate(3));
+        assertPose(3, -6, 30, 5, history.interpolate(5));
+        assertPose(4, -8, 40, 6, history.interpolate(6));
+    }
+
+    @Test
+    public void interpolatesTheYawAlongTheShorterArc() {
+        PoseHistory history = new PoseHistory();
+        history.add(new Pose(0, 0, 170, 1));
+        history.add(new Pose(0, 0, -170, 3));
+        assertEquals(180, history.interpolate(2).getYaw(), 1e-4);
+
+        history.add(new Pose(0, 0, -10, 5));
+        history.add(new Pose(0, 0, 30, 9));
+        assertEquals(0, history.interpolate(6).getYaw(), 1e-4);
+    }
+
+    @Test
+    public void doesNotExtrapolate() {
+        PoseHistory history = new PoseHistory();
+        assertNull(history.interpolate(1));
+        history.add(new Pose(1, 1, 0, 4));
+        history.add(new Pose(2, 2, 0, 6));
+        assertNull(history.interpolate(3));
+        assertNull(history.interpolate(7));
+    }
+
+    @Test
+    public void listsPosesByTimeAndClears() {
+        PoseHistory history = new PoseHistory();
+        history.add(new Pose(3, 0, 0, 9));
+        history.add(new Pose(1, 0, 0, 2));
+        history.add(new Pose(2, 0, 0, 5));
+        List<Pose> poses = history.toList();
+        assertEquals(3, poses.size());
+        assertEquals(2, poses.get(0).getTime());
+        assertEquals(5, poses.get(1).getTime());
+        assertEquals(9, poses.get(2).getTime());
+
+        history.clear();
+        assertTrue(history.toList().isEmpty());
+        assertEquals(-1, history.getLatestTime());
+        assertNull(history.get(5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsANegativeTick() {
+        new PoseHistory().add(new Pose(0, 0, 0, -1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsANegativeRetention() {
+        new PoseHistory(-1);
+    }
+
+    private static void assertPose(float x, float y, float yaw, int time, Pose pose) {
+        assertEquals(time, pose.getTime());
+        assertEquals(x, pose.getX(), 1e-4);
+        assertEquals(y, pose.getY(), 1e-4);
+        assertEquals(yaw, pose.getYaw(), 1e-4);
+    }
+}
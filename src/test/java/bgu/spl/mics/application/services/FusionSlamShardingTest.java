@@ -0,0 +1,124 @@
+package bgu.spl.mics.application.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MicroService;
+import bgu.spl.mics.RoutingPolicy;
+import bgu.spl.mics.application.messages.FusionShardEvent;
+import bgu.spl.mics.application.messages.PoseEvent;
+import bgu.spl.mics.application.messages.TerminatedBroadcast;
+import bgu.spl.mics.application.messages.TrackedObjectsEvent;
+import bgu.spl.mics.application.objects.FusionSlam;
+import bgu.spl.mics.application.objects.PackedPoints;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.objects.StatisticalFolder;
+import bgu.spl.mics.application.objects.TrackedObject;
+
+public class FusionSlamShardingTest {
+
+    private static final int TICKS = 600;
+
+    @Test(timeout = 60000)
+    public void shardedMapsEqualTheUnshardedMap() throws Exception {
+        String unsharded = landMarksOf(run(1));
+        assertTrue(unsharded.length() > 2); // Some landmarks were built
+        for (int shards : new int[] {2, 4}) {
+            assertEquals("landmarks with " + shards + " shards", unsharded, landMarksOf(run(shards)));
+        }
+    }
+
+    /**
+     * Runs Fusion-SLAM with {@code shards} shards on the same objects and poses, from a fixed seed.
+     * @return the output file.
+     */
+    private static File run(int shards) throws Exception {
+        File output = File.createTempFile("fusion-", ".json");
+        output.deleteOnExit();
+        MessageBusImpl bus = new MessageBusImpl();
+        bus.setRoutingPolicy(FusionShardEvent.class, RoutingPolicy.STICKY);
+        StatisticalFolder statistics = new StatisticalFolder();
+        int shardServices = shards > 1 ? shards : 0;
+        CountDownLatch ready = new CountDownLatch(shardServices + 2);
+
+        List<MicroService> services = new ArrayList<>();
+        for (int i = 0; i < shardServices; i++) {
+            services.add(new FusionShardService("FusionShard" + i, new FusionSlam(), statistics, ready, bus));
+        }
+        services.add(new FusionSlamService(new FusionSlam(), statistics, 1, output.getPath(), ready, shards, bus));
+        services.add(new Feeder(bus, ready));
+
+        List<Thread> threads = new ArrayList<>();
+        for (MicroService service : services) {
+            Thread thread = new Thread(service);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return output;
+    }
+
+    private static String landMarksOf(File output) throws IOException {
+        JsonObject json = JsonParser.parseString(Files.readString(output.toPath())).getAsJsonObject();
+        return json.get("landMarks").toString(); // In the order they were written
+    }
+
+    /**
+     * Sends tracked objects, revisiting ids so landmarks are averaged, and poses that lag two ticks
+     * behind with some ticks missing, so objects wait for poses and some poses are interpolated;
+     * then terminates like the last sensor.
+     */
+    private static final class Feeder extends MicroService {
+        private final CountDownLatch ready;
+
+        private Feeder(MessageBusImpl bus, CountDownLatch ready) {
+            super("Feeder", bus);
+            this.ready = ready;
+        }
+
+        @Override
+        protected void initialize() {
+            ready.countDown();
+            try {
+                ready.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            Random random = new Random(7);
+            for (int tick = 1; tick <= TICKS; tick++) {
+                List<TrackedObject> tracked = new ArrayList<>();
+                for (int i = 1 + random.nextInt(12); i > 0; i--) {
+                    double[] xy = new double[2 * (1 + random.nextInt(5))];
+                    for (int k = 0; k < xy.length; k++) {
+                        xy[k] = random.nextDouble() * 10;
+                    }
+                    int time = Math.max(1, tick - random.nextInt(3));
+                    tracked.add(new TrackedObject("Object" + random.nextInt(2000), time, "object", new PackedPoints(xy)));
+                }
+                sendEvent(new TrackedObjectsEvent(tracked));
+                if (tick > 2 && tick % 7 != 0) {
+                    sendEvent(new PoseEvent(new Pose(random.nextFloat() * 5, random.nextFloat() * 5, random.nextFloat() * 360, tick - 2)));
+                }
+            }
+            sendBroadcast(new TerminatedBroadcast(TimeService.class, "Time"));
+            terminate();
+        }
+    }
+}